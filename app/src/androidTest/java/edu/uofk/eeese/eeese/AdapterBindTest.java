@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese;
+
+import android.content.Context;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.uofk.eeese.eeese.data.Event;
+import edu.uofk.eeese.eeese.data.ProjectSummary;
+import edu.uofk.eeese.eeese.events.EventDisplays;
+import edu.uofk.eeese.eeese.events.EventsAdapter;
+import edu.uofk.eeese.eeese.projects.ProjectsAdapter;
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.plugins.RxJavaPlugins;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Binds a few holders over and over, like a long scroll does, and asserts that binding
+ * neither subscribes to anything nor allocates once the holders exist
+ */
+@RunWith(AndroidJUnit4.class)
+public class AdapterBindTest {
+
+    private static final int ITEMS = 100;
+    private static final int HOLDERS = 8;
+    private static final int BINDS = 5000;
+
+    @Rule
+    public UiThreadTestRule uiThread = new UiThreadTestRule();
+
+    private final AtomicInteger subscriptions = new AtomicInteger();
+    private FrameLayout parent;
+
+    @Before
+    public void setUp() {
+        Context context = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(),
+                R.style.AppTheme);
+        parent = new FrameLayout(context);
+        RxJavaPlugins.setOnObservableSubscribe(new BiFunction<Observable, Observer, Observer>() {
+            @Override
+            public Observer apply(Observable observable, Observer observer) {
+                subscriptions.incrementAndGet();
+                return observer;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        RxJavaPlugins.reset();
+    }
+
+    @Test
+    @UiThreadTest
+    public void bindingProjects_neitherSubscribesNorAllocates() {
+        List<ProjectSummary> projects = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; ++i) {
+            projects.add(new ProjectSummary("project" + i, "Project " + i, "Head " + i));
+        }
+        ProjectsAdapter adapter = new ProjectsAdapter();
+        adapter.update(projects);
+        assertBindsAreFree(adapter);
+    }
+
+    @Test
+    @UiThreadTest
+    public void bindingEvents_neitherSubscribesNorAllocates() {
+        List<Event> events = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; ++i) {
+            DateTime start = new DateTime(2017, 1, 1, 10, 0).plusDays(i);
+            events.add(new Event("event" + i, "Event " + i, "Description " + i,
+                    null, 32.5 + i, 15.5, start, i % 2 == 0 ? start.plusHours(2) : null));
+        }
+        EventsAdapter adapter = new EventsAdapter();
+        adapter.update(EventDisplays.of(events));
+        assertBindsAreFree(adapter);
+    }
+
+    @SuppressWarnings({"unchecked", "deprecation"})
+    private <VH extends RecyclerView.ViewHolder> void assertBindsAreFree(
+            RecyclerView.Adapter<VH> adapter) {
+        List<VH> holders = new ArrayList<>(HOLDERS);
+        for (int i = 0; i < HOLDERS; ++i) {
+            holders.add(adapter.onCreateViewHolder(parent, 0));
+        }
+        // The first binds may fill caches of the views, like a scroll's first screen
+        for (int i = 0; i < ITEMS; ++i) {
+            adapter.onBindViewHolder(holders.get(i % HOLDERS), i);
+        }
+
+        subscriptions.set(0);
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < BINDS; ++i) {
+            adapter.onBindViewHolder(holders.get(i % HOLDERS), i % ITEMS);
+        }
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+
+        assertThat(subscriptions.get(), equalTo(0));
+        // Fewer allocations than binds, so no bind allocates on its own
+        assertThat(allocations, lessThan(BINDS));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry;
+
+/**
+ * Compares reading a large cursor with {@link DataUtils.Projects.Mapper} against looking up the
+ * index of every column on every row, like the projects used to be read.
+ * The results are logged under the class name, nothing is asserted.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CursorMapperBenchmark {
+
+    private static final String TAG = CursorMapperBenchmark.class.getSimpleName();
+    private static final int ROWS = 100000;
+    private static final String[] COLUMNS = {
+            ProjectEntry._ID,
+            ProjectEntry.COLUMN_PROJECT_ID,
+            ProjectEntry.COLUMN_PROJECT_NAME,
+            ProjectEntry.COLUMN_PROJECT_HEAD,
+            ProjectEntry.COLUMN_PROJECT_DESC,
+            ProjectEntry.COLUMN_PROJECT_CATEGORY,
+            ProjectEntry.COLUMN_PROJECT_PREREQS,
+            ProjectEntry.COLUMN_PROJECT_HASH
+    };
+
+    @Test
+    public void readProjects() {
+        // warm up both paths before timing them
+        perRowLookup(cursor(1000));
+        new DataUtils.Projects.Mapper(cursor(1000)).readAll();
+
+        Cursor cursor = cursor(ROWS);
+        long start = System.nanoTime();
+        perRowLookup(cursor);
+        long perRow = System.nanoTime() - start;
+
+        cursor = cursor(ROWS);
+        start = System.nanoTime();
+        new DataUtils.Projects.Mapper(cursor).readAll();
+        long mapper = System.nanoTime() - start;
+
+        Log.i(TAG, ROWS + " rows: per row lookup " + perRow / 1000000 + " ms, " +
+                "mapper " + mapper / 1000000 + " ms");
+    }
+
+    private static Cursor cursor(int rows) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, rows);
+        for (int i = 0; i < rows; ++i) {
+            cursor.addRow(new Object[]{i, "project" + i, "Project " + i, "Head " + i,
+                    "Description of project " + i, i % 4, "a,b", (long) i});
+        }
+        return cursor;
+    }
+
+    private static List<Project> perRowLookup(Cursor cursor) {
+        List<Project> projects = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            projects.add(new Project(
+                    cursor.getString(cursor.getColumnIndexOrThrow(ProjectEntry.COLUMN_PROJECT_ID)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(ProjectEntry.COLUMN_PROJECT_NAME)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(ProjectEntry.COLUMN_PROJECT_DESC)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(ProjectEntry.COLUMN_PROJECT_HEAD)),
+                    DataUtils.Projects.INSTANCE.category(cursor.getInt(
+                            cursor.getColumnIndexOrThrow(ProjectEntry.COLUMN_PROJECT_CATEGORY))),
+                    Arrays.asList(cursor.getString(cursor.getColumnIndexOrThrow(
+                            ProjectEntry.COLUMN_PROJECT_PREREQS)).split(","))));
+        }
+        cursor.close();
+        return projects;
+    }
+}
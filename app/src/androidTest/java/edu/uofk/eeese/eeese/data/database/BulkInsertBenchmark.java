@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.database;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry;
+
+/**
+ * Compares the rows per second of inserting with insertOrThrow, which compiles the INSERT for
+ * every row, against the compiled statements of {@link StatementCache}.
+ * The results are logged under the class name, nothing is asserted.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmark {
+
+    private static final String TAG = BulkInsertBenchmark.class.getSimpleName();
+
+    private DatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void openDatabase() {
+        dbHelper = new DatabaseHelper(InstrumentationRegistry.getTargetContext(), null);
+        db = dbHelper.getWritableDatabase();
+    }
+
+    @After
+    public void closeDatabase() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void insert10k() {
+        compare(10000);
+    }
+
+    @Test
+    public void insert100k() {
+        compare(100000);
+    }
+
+    private void compare(int rows) {
+        ContentValues[] values = values(rows);
+
+        long insertOrThrow = time(values, false);
+        db.delete(ProjectEntry.TABLE_NAME, null, null);
+        long compiled = time(values, true);
+
+        Log.i(TAG, rows + " rows: insertOrThrow " + rowsPerSecond(rows, insertOrThrow) +
+                " rows/s, compiled statement " + rowsPerSecond(rows, compiled) + " rows/s");
+    }
+
+    private long time(ContentValues[] values, boolean compiled) {
+        long start = System.nanoTime();
+        db.beginTransaction();
+        try {
+            for (ContentValues row : values) {
+                if (compiled) {
+                    dbHelper.getStatements().insert(ProjectEntry.TABLE_NAME, row);
+                } else {
+                    db.insertOrThrow(ProjectEntry.TABLE_NAME, null, row);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static ContentValues[] values(int rows) {
+        ContentValues[] values = new ContentValues[rows];
+        for (int i = 0; i < rows; ++i) {
+            ContentValues row = new ContentValues();
+            row.put(ProjectEntry.COLUMN_PROJECT_ID, "project" + i);
+            row.put(ProjectEntry.COLUMN_PROJECT_NAME, "Project " + i);
+            row.put(ProjectEntry.COLUMN_PROJECT_HEAD, "Head " + i);
+            row.put(ProjectEntry.COLUMN_PROJECT_DESC, "Description of project " + i);
+            row.put(ProjectEntry.COLUMN_PROJECT_CATEGORY, i % 4);
+            row.put(ProjectEntry.COLUMN_PROJECT_HASH, (long) i);
+            values[i] = row;
+        }
+        return values;
+    }
+
+    private static long rowsPerSecond(int rows, long nanos) {
+        return rows * 1000000000L / Math.max(1, nanos);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry;
+
+/**
+ * Measures the latency of a list query while a large sync is writing to the database,
+ * in the rollback journal mode and in write-ahead logging mode.
+ * The results are logged under the class name, nothing is asserted.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentAccessBenchmark {
+
+    private static final String TAG = ConcurrentAccessBenchmark.class.getSimpleName();
+    private static final String DATABASE_NAME = "benchmark.db";
+    private static final int SYNC_ROWS = 20000;
+    // The same yield interval DataProvider.applyBatch uses
+    private static final int YIELD_INTERVAL = 100;
+
+    private final Context context = InstrumentationRegistry.getTargetContext();
+
+    @After
+    public void deleteDatabase() {
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void queryLatencyDuringSync_withRollbackJournal() throws InterruptedException {
+        run("rollback journal", false);
+    }
+
+    @Test
+    public void queryLatencyDuringSync_withWriteAheadLogging() throws InterruptedException {
+        run("write-ahead logging", true);
+    }
+
+    private void run(String mode, boolean writeAheadLogging) throws InterruptedException {
+        context.deleteDatabase(DATABASE_NAME);
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DATABASE_NAME);
+        dbHelper.setWriteAheadLoggingEnabled(writeAheadLogging);
+        final SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try {
+            final AtomicBoolean syncing = new AtomicBoolean(true);
+            Thread sync = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    sync(db);
+                    syncing.set(false);
+                }
+            });
+            sync.start();
+
+            List<Long> latencies = new ArrayList<>();
+            while (syncing.get()) {
+                long start = System.nanoTime();
+                Cursor cursor = db.query(ProjectEntry.TABLE_NAME, null,
+                        ProjectEntry.COLUMN_PROJECT_CATEGORY + " = ?", new String[]{"1"},
+                        null, null, ProjectEntry.COLUMN_PROJECT_NAME, "50");
+                try {
+                    while (cursor.moveToNext()) {
+                        cursor.getString(0);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                latencies.add((System.nanoTime() - start) / 1000);
+            }
+            sync.join();
+
+            Collections.sort(latencies);
+            Log.i(TAG, mode + ": " + latencies.size() + " queries during the sync, latency in µs " +
+                    "p50 " + percentile(latencies, 50) +
+                    ", p95 " + percentile(latencies, 95) +
+                    ", p99 " + percentile(latencies, 99) +
+                    ", max " + percentile(latencies, 100));
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    private void sync(SQLiteDatabase db) {
+        ContentValues values = new ContentValues();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < SYNC_ROWS; ++i) {
+                if (i > 0 && i % YIELD_INTERVAL == 0) {
+                    db.yieldIfContendedSafely(0);
+                }
+                values.put(ProjectEntry.COLUMN_PROJECT_ID, "project" + i);
+                values.put(ProjectEntry.COLUMN_PROJECT_NAME, "Project " + i);
+                values.put(ProjectEntry.COLUMN_PROJECT_HEAD, "Head " + i);
+                values.put(ProjectEntry.COLUMN_PROJECT_DESC, "Description of project " + i);
+                values.put(ProjectEntry.COLUMN_PROJECT_CATEGORY, i % 4);
+                db.insertOrThrow(ProjectEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+}
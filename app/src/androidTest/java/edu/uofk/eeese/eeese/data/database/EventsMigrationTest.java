@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import edu.uofk.eeese.eeese.data.DataContract.EventEntry;
+import edu.uofk.eeese.eeese.data.DataContract.EventSearchEntry;
+import edu.uofk.eeese.eeese.data.DataContract.ProjectSearchEntry;
+import edu.uofk.eeese.eeese.data.DataUtils.Events;
+import edu.uofk.eeese.eeese.data.Event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Upgrades a database with ISO-8601 text event dates and "long,lat" text locations,
+ * or with epoch millis dates and "long,lat" text locations, to the current events table
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventsMigrationTest {
+
+    private static final String LOCATION = "location";
+
+    private DatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void createTextDatesDatabase() {
+        dbHelper = new DatabaseHelper(InstrumentationRegistry.getTargetContext(), null);
+        db = dbHelper.getWritableDatabase();
+        db.execSQL("DROP TABLE " + EventEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE " + EventSearchEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE " + ProjectSearchEntry.TABLE_NAME);
+        db.execSQL("CREATE TABLE " + EventEntry.TABLE_NAME + "( " +
+                EventEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                EventEntry.COLUMN_EVENT_ID + " TEXT UNIQUE ON CONFLICT REPLACE, " +
+                EventEntry.COLUMN_EVENT_NAME + " TEXT NOT NULL, " +
+                EventEntry.COLUMN_EVENT_DESC + " TEXT, " +
+                EventEntry.COLUMN_EVENT_IMAGE_URI + " TEXT, " +
+                LOCATION + " TEXT, " +
+                EventEntry.COLUMN_EVENT_START_DATE + " TEXT, " +
+                EventEntry.COLUMN_EVENT_END_DATE + " TEXT, " +
+                EventEntry.COLUMN_EVENT_HASH + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("INSERT INTO " + EventEntry.TABLE_NAME + " (" +
+                EventEntry.COLUMN_EVENT_ID + ", " + EventEntry.COLUMN_EVENT_NAME + ", " +
+                EventEntry.COLUMN_EVENT_DESC + ", " + EventEntry.COLUMN_EVENT_IMAGE_URI + ", " +
+                LOCATION + ", " + EventEntry.COLUMN_EVENT_START_DATE + ", " +
+                EventEntry.COLUMN_EVENT_END_DATE + ") VALUES " +
+                "('1', 'Dated', 'desc', '', '32.5,15.6', " +
+                "'2017-03-01T10:00:00.000+02:00', '2017-03-01T12:30:00.000+02:00'), " +
+                "('2', 'Undated', 'desc', '', '', '', 'not a date')");
+    }
+
+    @After
+    public void closeDatabase() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void keepsTheInstantsAndOffsetsOfTheDates() {
+        List<Event> events = migratedEvents();
+        DateTimeZone offset = DateTimeZone.forOffsetHours(2);
+        assertEquals(new DateTime(2017, 3, 1, 10, 0, offset), events.get(0).getStart());
+        assertEquals(new DateTime(2017, 3, 1, 12, 30, offset), events.get(0).getEnd());
+    }
+
+    @Test
+    public void migratesMissingOrInvalidDatesToNull() {
+        List<Event> events = migratedEvents();
+        assertNull(events.get(1).getStart());
+        assertNull(events.get(1).getEnd());
+    }
+
+    @Test
+    public void splitsTheLocationsIntoLongitudeAndLatitude() {
+        List<Event> events = migratedEvents();
+        assertEquals(32.5, events.get(0).getLongitude(), 0);
+        assertEquals(15.6, events.get(0).getLatitude(), 0);
+        assertNull(events.get(1).getLongitude());
+        assertNull(events.get(1).getLatitude());
+    }
+
+    @Test
+    public void storesTheHashesOfTheMigratedEvents() {
+        List<Event> events = migratedEvents();
+        Cursor cursor = db.query(EventEntry.TABLE_NAME,
+                new String[]{EventEntry.COLUMN_EVENT_ID, EventEntry.COLUMN_EVENT_HASH},
+                null, null, null, null, EventEntry.COLUMN_EVENT_ID);
+        try {
+            for (Event event : events) {
+                cursor.moveToNext();
+                assertEquals(Events.INSTANCE.hash(event), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upgradesMillisDates_keepingTheirInstantsAndZones() {
+        db.execSQL("DROP TABLE " + EventEntry.TABLE_NAME);
+        db.execSQL("CREATE TABLE " + EventEntry.TABLE_NAME + "( " +
+                EventEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                EventEntry.COLUMN_EVENT_ID + " TEXT UNIQUE ON CONFLICT REPLACE, " +
+                EventEntry.COLUMN_EVENT_NAME + " TEXT NOT NULL, " +
+                EventEntry.COLUMN_EVENT_DESC + " TEXT, " +
+                EventEntry.COLUMN_EVENT_IMAGE_URI + " TEXT, " +
+                LOCATION + " TEXT, " +
+                EventEntry.COLUMN_EVENT_START_DATE + " INTEGER, " +
+                EventEntry.COLUMN_EVENT_START_OFFSET + " INTEGER, " +
+                EventEntry.COLUMN_EVENT_END_DATE + " INTEGER, " +
+                EventEntry.COLUMN_EVENT_END_OFFSET + " INTEGER, " +
+                EventEntry.COLUMN_EVENT_HASH + " INTEGER NOT NULL DEFAULT 0)");
+        DateTime start = new DateTime(2017, 3, 1, 10, 0, DateTimeZone.forOffsetHours(2));
+        DateTime end = new DateTime(2017, 3, 1, 12, 30, DateTimeZone.forOffsetHours(3));
+        db.execSQL("INSERT INTO " + EventEntry.TABLE_NAME + " (" +
+                        EventEntry.COLUMN_EVENT_ID + ", " + EventEntry.COLUMN_EVENT_NAME + ", " +
+                        LOCATION + ", " +
+                        EventEntry.COLUMN_EVENT_START_DATE + ", " +
+                        EventEntry.COLUMN_EVENT_START_OFFSET + ", " +
+                        EventEntry.COLUMN_EVENT_END_DATE + ", " +
+                        EventEntry.COLUMN_EVENT_END_OFFSET + ") VALUES (?, ?, ?, ?, ?, ?, ?)",
+                new Object[]{"1", "Dated", "32.5,15.6",
+                        start.getMillis(), 2 * 3600000, end.getMillis(), 3 * 3600000});
+
+        List<Event> events = migratedEvents(8);
+        assertEquals(start, events.get(0).getStart());
+        assertEquals(start.getZone(), events.get(0).getStart().getZone());
+        assertEquals(end, events.get(0).getEnd());
+        assertEquals(end.getZone(), events.get(0).getEnd().getZone());
+        assertEquals(32.5, events.get(0).getLongitude(), 0);
+    }
+
+    private List<Event> migratedEvents() {
+        return migratedEvents(7);
+    }
+
+    private List<Event> migratedEvents(int oldVersion) {
+        dbHelper.onUpgrade(db, oldVersion, db.getVersion());
+        return Events.INSTANCE.events(db.query(EventEntry.TABLE_NAME, Events.PROJECTION,
+                null, null, null, null, EventEntry.COLUMN_EVENT_ID));
+    }
+}
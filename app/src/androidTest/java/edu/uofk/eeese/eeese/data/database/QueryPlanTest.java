@@ -0,0 +1,308 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.TextUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import edu.uofk.eeese.eeese.data.DataContract.EventEntry;
+import edu.uofk.eeese.eeese.data.DataContract.PrerequisiteEntry;
+import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry;
+import edu.uofk.eeese.eeese.data.DataUtils.Events;
+import edu.uofk.eeese.eeese.data.DataUtils.Projects;
+import edu.uofk.eeese.eeese.data.ProjectCategory;
+import edu.uofk.eeese.eeese.data.source.AnyRow;
+import edu.uofk.eeese.eeese.data.source.ContentProviderSelection;
+import edu.uofk.eeese.eeese.data.source.ContentProviderSpecification;
+import edu.uofk.eeese.eeese.data.source.EventWithId;
+import edu.uofk.eeese.eeese.data.source.EventsInBox;
+import edu.uofk.eeese.eeese.data.source.FirstProjectsOfEachCategory;
+import edu.uofk.eeese.eeese.data.source.KeysetPage;
+import edu.uofk.eeese.eeese.data.source.NearestEvents;
+import edu.uofk.eeese.eeese.data.source.OngoingEvents;
+import edu.uofk.eeese.eeese.data.source.PastEvents;
+import edu.uofk.eeese.eeese.data.source.ProjectRequiring;
+import edu.uofk.eeese.eeese.data.source.ProjectWithCategory;
+import edu.uofk.eeese.eeese.data.source.ProjectWithId;
+import edu.uofk.eeese.eeese.data.source.UpcomingEvents;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Asserts the query plans of the specifications, so that a query that stops using its index
+ * is caught before it turns into a full table scan
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+
+    private static final long NOW = 1483228800000L;
+
+    private DatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void openDatabase() {
+        dbHelper = new DatabaseHelper(InstrumentationRegistry.getTargetContext(), null);
+        db = dbHelper.getReadableDatabase();
+    }
+
+    @After
+    public void closeDatabase() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void projectWithId_usesTheIdIndex() {
+        String plan = plan(ProjectEntry.TABLE_NAME, new ProjectWithId("id"), null);
+        assertThat(plan, containsString("(" + ProjectEntry.COLUMN_PROJECT_ID + "=?)"));
+        assertThat(plan, not(containsString("SCAN")));
+    }
+
+    @Test
+    public void projectWithCategory_orderedByName_usesTheCategoryIndex_withoutSorting() {
+        String plan = plan(ProjectEntry.TABLE_NAME, new ProjectWithCategory(ProjectCategory.POWER),
+                ProjectEntry.COLUMN_PROJECT_NAME);
+        assertThat(plan, containsString("USING INDEX " +
+                DatabaseHelper.INDEX_PROJECTS_CATEGORY_NAME));
+        assertThat(plan, not(containsString("TEMP B-TREE")));
+    }
+
+    @Test
+    public void projectSummariesWithCategory_onlyReadTheCategoryIndex() {
+        ContentProviderSelection selection =
+                new ProjectWithCategory(ProjectCategory.POWER).toSelectionQuery();
+        String plan = plan("SELECT " + TextUtils.join(", ", Projects.SUMMARY_PROJECTION) +
+                " FROM " + ProjectEntry.TABLE_NAME +
+                " WHERE " + selection.getSelection() +
+                " ORDER BY " + ProjectEntry.COLUMN_PROJECT_NAME, selection.getSelectionArgs());
+        assertThat(plan, containsString("COVERING INDEX " +
+                DatabaseHelper.INDEX_PROJECTS_CATEGORY_NAME));
+        assertThat(plan, not(containsString("TEMP B-TREE")));
+    }
+
+    @Test
+    public void projectPages_seekInTheCategoryIndex_withoutSorting() {
+        KeysetPage page = new KeysetPage(new ProjectWithCategory(ProjectCategory.POWER),
+                ProjectEntry.COLUMN_PROJECT_NAME, ProjectEntry.COLUMN_PROJECT_ID,
+                "name", "id", 30);
+        String plan = plan(ProjectEntry.TABLE_NAME, Projects.SUMMARY_PROJECTION,
+                page, page.orderBy());
+        assertThat(plan, containsString("USING COVERING INDEX " +
+                DatabaseHelper.INDEX_PROJECTS_CATEGORY_NAME));
+        assertThat(plan, containsString(ProjectEntry.COLUMN_PROJECT_NAME + ">?"));
+        assertThat(plan, not(containsString("TEMP B-TREE")));
+    }
+
+    @Test
+    public void firstProjectsOfEachCategory_readEveryCategoryFromTheCategoryIndex() {
+        FirstProjectsOfEachCategory spec = new FirstProjectsOfEachCategory(30);
+        String plan = plan(ProjectEntry.TABLE_NAME, Projects.CATEGORY_SUMMARY_PROJECTION,
+                spec, spec.orderBy());
+        String index = "COVERING INDEX " + DatabaseHelper.INDEX_PROJECTS_CATEGORY_NAME;
+        int branches = 0;
+        for (int i = plan.indexOf(index); i >= 0; i = plan.indexOf(index, i + 1)) {
+            branches++;
+        }
+        assertThat(branches, greaterThanOrEqualTo(ProjectCategory.values().length));
+    }
+
+    @Test
+    public void projectsRequiringAPrerequisite_useThePrerequisiteIndex() {
+        String plan = plan(ProjectEntry.TABLE_NAME, new ProjectRequiring("Circuits"), null);
+        assertThat(plan, containsString("COVERING INDEX " +
+                DatabaseHelper.INDEX_PROJECT_PREREQUISITES));
+        assertThat(plan, not(containsString("SCAN TABLE " + PrerequisiteEntry.TABLE_NAME)));
+    }
+
+    @Test
+    public void eventPages_readEveryEventOnce_includingTheOnesWithoutAStart() {
+        insertEvent("a", null);
+        insertEvent("b", null);
+        insertEvent("c", NOW);
+        insertEvent("d", NOW);
+        insertEvent("e", NOW + 1);
+        StringBuilder read = new StringBuilder();
+        String afterStart = null;
+        String afterId = null;
+        do {
+            KeysetPage page = new KeysetPage(AnyRow.INSTANCE,
+                    Events.START_ORDER, EventEntry.COLUMN_EVENT_ID, afterStart, afterId, 2);
+            ContentProviderSelection selection = page.toSelectionQuery();
+            Cursor cursor = db.query(EventEntry.TABLE_NAME, new String[]{
+                            EventEntry.COLUMN_EVENT_ID, Events.START_ORDER},
+                    selection.getSelection(), selection.getSelectionArgs(),
+                    null, null, page.orderBy(), String.valueOf(page.limit()));
+            try {
+                afterId = null;
+                while (cursor.moveToNext()) {
+                    afterId = cursor.getString(0);
+                    afterStart = cursor.getString(1);
+                    read.append(afterId);
+                }
+            } finally {
+                cursor.close();
+            }
+        } while (afterId != null);
+        assertEquals("abcde", read.toString());
+    }
+
+    @Test
+    public void upcomingEvents_seekInTheStartIndex() {
+        String plan = plan(EventEntry.TABLE_NAME, new UpcomingEvents(NOW), null);
+        assertThat(plan, containsString("USING INDEX " + DatabaseHelper.INDEX_EVENTS_START));
+        assertThat(plan, containsString(EventEntry.COLUMN_EVENT_START_DATE + ">?"));
+    }
+
+    @Test
+    public void ongoingEvents_seekInAnEventsDateIndex() {
+        String plan = plan(EventEntry.TABLE_NAME, new OngoingEvents(NOW), null);
+        assertThat(plan, containsString("SEARCH TABLE " + EventEntry.TABLE_NAME + " USING INDEX"));
+    }
+
+    @Test
+    public void pastEvents_seekInTheEndIndex() {
+        String plan = plan(EventEntry.TABLE_NAME, new PastEvents(NOW), null);
+        assertThat(plan, containsString("USING INDEX " + DatabaseHelper.INDEX_EVENTS_END));
+        assertThat(plan, not(containsString("SCAN TABLE")));
+    }
+
+    @Test
+    public void eventsInBox_seekALongitudeRangeInEachLatitudeBand() {
+        String plan = plan(EventEntry.TABLE_NAME,
+                new EventsInBox(15.5, 32.4, 15.7, 32.6), null);
+        assertThat(plan, containsString("USING INDEX " + DatabaseHelper.INDEX_EVENTS_LOCATION));
+        assertThat(plan, containsString(EventEntry.COLUMN_EVENT_LONGITUDE + ">?"));
+    }
+
+    @Test
+    public void nearestEvents_onlySortTheEventsInTheirBox() {
+        NearestEvents nearest = new NearestEvents(15.6, 32.5, 10);
+        String plan = plan(EventEntry.TABLE_NAME, nearest, nearest.orderBy());
+        assertThat(plan, containsString("USING INDEX " + DatabaseHelper.INDEX_EVENTS_LOCATION));
+        assertThat(plan, not(containsString("SCAN TABLE")));
+    }
+
+    @Test
+    public void eventsInBox_acrossTheAntimeridian_seekBothSides() {
+        String plan = plan(EventEntry.TABLE_NAME,
+                new EventsInBox(-0.5, 179.5, 0.5, -179.5), null);
+        assertThat(plan, containsString("USING INDEX " + DatabaseHelper.INDEX_EVENTS_LOCATION));
+        assertThat(plan, not(containsString("SCAN TABLE")));
+    }
+
+    @Test
+    public void nearestEvents_acrossTheAntimeridian_withinTheRadiusOnly() {
+        insertEventAt("across", 0, -179.9);
+        insertEventAt("near", 0, 179.5);
+        // In the box around the radius, but about 130km away
+        insertEventAt("corner", 0.85, -179.25);
+        NearestEvents nearest = new NearestEvents(0, 179.9, 10);
+        ContentProviderSelection selection = nearest.toSelectionQuery();
+        Cursor cursor = db.query(EventEntry.TABLE_NAME, new String[]{EventEntry.COLUMN_EVENT_ID},
+                selection.getSelection(), selection.getSelectionArgs(),
+                null, null, nearest.orderBy(), String.valueOf(nearest.limit()));
+        try {
+            StringBuilder read = new StringBuilder();
+            while (cursor.moveToNext()) {
+                read.append(cursor.getString(0)).append(' ');
+            }
+            assertEquals("across near ", read.toString());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void eventWithId_usesTheIdIndex() {
+        String plan = plan(EventEntry.TABLE_NAME, new EventWithId("id"), null);
+        assertThat(plan, containsString("(" + EventEntry.COLUMN_EVENT_ID + "=?)"));
+        assertThat(plan, not(containsString("SCAN")));
+    }
+
+    @Test
+    public void eventsOrderedByStart_useTheStartIndex_withoutSorting() {
+        String plan = plan("SELECT * FROM " + EventEntry.TABLE_NAME +
+                " ORDER BY " + EventEntry.COLUMN_EVENT_START_DATE, null);
+        assertThat(plan, containsString("USING INDEX " + DatabaseHelper.INDEX_EVENTS_START));
+        assertThat(plan, not(containsString("TEMP B-TREE")));
+    }
+
+    @Test
+    public void syncHashScans_onlyReadTheCoveringIndexes() {
+        assertThat(plan("SELECT " + ProjectEntry.COLUMN_PROJECT_ID + ", " +
+                        ProjectEntry.COLUMN_PROJECT_HASH + " FROM " + ProjectEntry.TABLE_NAME,
+                null),
+                containsString("COVERING INDEX " + DatabaseHelper.INDEX_PROJECTS_HASH));
+        assertThat(plan("SELECT " + EventEntry.COLUMN_EVENT_ID + ", " +
+                        EventEntry.COLUMN_EVENT_HASH + " FROM " + EventEntry.TABLE_NAME,
+                null),
+                containsString("COVERING INDEX " + DatabaseHelper.INDEX_EVENTS_HASH));
+    }
+
+    private void insertEvent(String id, Long start) {
+        ContentValues values = new ContentValues();
+        values.put(EventEntry.COLUMN_EVENT_ID, id);
+        values.put(EventEntry.COLUMN_EVENT_NAME, id);
+        values.put(EventEntry.COLUMN_EVENT_START_DATE, start);
+        db.insertOrThrow(EventEntry.TABLE_NAME, null, values);
+    }
+
+    private void insertEventAt(String id, double latitude, double longitude) {
+        ContentValues values = new ContentValues();
+        values.put(EventEntry.COLUMN_EVENT_ID, id);
+        values.put(EventEntry.COLUMN_EVENT_NAME, id);
+        values.put(EventEntry.COLUMN_EVENT_LATITUDE, latitude);
+        values.put(EventEntry.COLUMN_EVENT_LONGITUDE, longitude);
+        values.put(EventEntry.COLUMN_EVENT_LATITUDE_BAND, Events.INSTANCE.latitudeBand(latitude));
+        db.insertOrThrow(EventEntry.TABLE_NAME, null, values);
+    }
+
+    private String plan(String table, ContentProviderSpecification spec, String orderBy) {
+        return plan(table, null, spec, orderBy);
+    }
+
+    private String plan(String table, String[] projection,
+                        ContentProviderSpecification spec, String orderBy) {
+        ContentProviderSelection selection = spec.toSelectionQuery();
+        String columns = projection != null ? TextUtils.join(", ", projection) : "*";
+        String query = "SELECT " + columns + " FROM " + table +
+                (selection.getSelection() != null ? " WHERE " + selection.getSelection() : "") +
+                (orderBy != null ? " ORDER BY " + orderBy : "");
+        return plan(query, selection.getSelectionArgs());
+    }
+
+    private String plan(String query, String[] args) {
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, args);
+        try {
+            StringBuilder plan = new StringBuilder();
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+}
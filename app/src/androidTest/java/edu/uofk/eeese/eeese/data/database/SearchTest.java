@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry;
+import edu.uofk.eeese.eeese.data.source.ContentProviderSelection;
+import edu.uofk.eeese.eeese.data.source.ProjectSearch;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Searches the projects through their full-text index, kept up to date by the triggers
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchTest {
+
+    private DatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void openDatabase() {
+        dbHelper = new DatabaseHelper(InstrumentationRegistry.getTargetContext(), null);
+        db = dbHelper.getWritableDatabase();
+        insert("1", "Power Systems", "Ahmed", "Protection of transmission lines");
+        insert("2", "Signals", "Sara", "Power spectrum estimation");
+        insert("3", "أنظمة القدرة الكهربائية", "أَحْمَد", "حماية خطوط النقل");
+    }
+
+    @After
+    public void closeDatabase() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void matchesWordPrefixes_inAnyCase() {
+        assertEquals(Arrays.asList("1", "2"), search("pow"));
+        assertEquals(Collections.singletonList("1"), search("POWER sys"));
+    }
+
+    @Test
+    public void ranksTheNameMatchesFirst() {
+        insert("4", "Antennas", "Power", "Arrays");
+        assertEquals(Arrays.asList("1", "4", "2"), search("power"));
+    }
+
+    @Test
+    public void matchesArabic_whateverTheFormOfItsLetters() {
+        assertEquals(Collections.singletonList("3"), search("انظمه"));
+        assertEquals(Collections.singletonList("3"), search("احمد"));
+        assertEquals(Collections.singletonList("3"), search("الكهرب"));
+    }
+
+    @Test
+    public void matchesNothingWithoutTerms() {
+        assertEquals(Collections.emptyList(), search("* \"\""));
+    }
+
+    @Test
+    public void followsUpdates_deletes_andReplacedRows() {
+        ContentValues values = new ContentValues();
+        values.put(ProjectEntry.COLUMN_PROJECT_NAME, "Control");
+        db.update(ProjectEntry.TABLE_NAME, values, ProjectEntry.COLUMN_PROJECT_ID + " = ?",
+                new String[]{"1"});
+        assertEquals(Collections.singletonList("1"), search("control"));
+
+        db.delete(ProjectEntry.TABLE_NAME, ProjectEntry.COLUMN_PROJECT_ID + " = ?",
+                new String[]{"2"});
+        assertEquals(Collections.emptyList(), search("signals"));
+
+        insert("3", "Machines", "Omar", "Induction motors");
+        assertEquals(Collections.emptyList(), search("احمد"));
+        assertEquals(Collections.singletonList("3"), search("machines"));
+        Cursor cursor = db.rawQuery("SELECT count(*) FROM projects_search", null);
+        try {
+            cursor.moveToFirst();
+            assertEquals(2, cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void insert(String id, String name, String head, String desc) {
+        ContentValues values = new ContentValues();
+        values.put(ProjectEntry.COLUMN_PROJECT_ID, id);
+        values.put(ProjectEntry.COLUMN_PROJECT_NAME, name);
+        values.put(ProjectEntry.COLUMN_PROJECT_HEAD, head);
+        values.put(ProjectEntry.COLUMN_PROJECT_DESC, desc);
+        db.insertOrThrow(ProjectEntry.TABLE_NAME, null, values);
+    }
+
+    private List<String> search(String query) {
+        ProjectSearch search = new ProjectSearch(query);
+        ContentProviderSelection selection = search.toSelectionQuery();
+        Cursor cursor = db.query(ProjectEntry.TABLE_NAME,
+                new String[]{ProjectEntry.COLUMN_PROJECT_ID},
+                selection.getSelection(), selection.getSelectionArgs(),
+                null, null, search.orderBy(), String.valueOf(search.limit()));
+        try {
+            List<String> ids = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data
+
+import android.database.Cursor
+
+/**
+ * Reads models from the rows of a cursor, resolving the indices of their columns once for the
+ * cursor instead of once for every row.
+ *
+ * Columns missing from the cursor's projection do not fail the mapper, they are reported in
+ * [missingColumns] and read as null, and only reading a model that can not do without them fails.
+ */
+abstract class CursorMapper<out T>(protected val cursor: Cursor,
+                                   private val columns: Array<String>) {
+
+    private val indices = IntArray(columns.size) { cursor.getColumnIndex(columns[it]) }
+
+    /**
+     * The columns the mapper reads that are not in the cursor
+     */
+    val missingColumns: List<String> = columns.filterIndexed { i, _ -> indices[i] < 0 }
+
+    /**
+     * Reads the model from the row the cursor is currently at
+     */
+    abstract fun read(): T
+
+    /**
+     * Reads every row of the cursor, then closes it
+     */
+    fun readAll(): List<T> {
+        try {
+            val models = ArrayList<T>(cursor.count)
+            cursor.moveToPosition(-1)
+            while (cursor.moveToNext()) {
+                models.add(read())
+            }
+            return models
+        } finally {
+            cursor.close()
+        }
+    }
+
+    /**
+     * Reads the first row of the cursor, if there is one, then closes it
+     */
+    fun readFirst(): T? {
+        try {
+            return if (cursor.moveToFirst()) read() else null
+        } finally {
+            cursor.close()
+        }
+    }
+
+    protected fun string(column: Int): String? {
+        val index = indices[column]
+        return if (index < 0 || cursor.isNull(index)) null else cursor.getString(index)
+    }
+
+    protected fun int(column: Int): Int? {
+        val index = indices[column]
+        return if (index < 0 || cursor.isNull(index)) null else cursor.getInt(index)
+    }
+
+    protected fun long(column: Int): Long? {
+        val index = indices[column]
+        return if (index < 0 || cursor.isNull(index)) null else cursor.getLong(index)
+    }
+
+    protected fun double(column: Int): Double? {
+        val index = indices[column]
+        return if (index < 0 || cursor.isNull(index)) null else cursor.getDouble(index)
+    }
+
+    protected fun requiredString(column: Int): String = string(column) ?: throw missing(column)
+
+    protected fun requiredInt(column: Int): Int = int(column) ?: throw missing(column)
+
+    private fun missing(column: Int) =
+            IllegalStateException("${columns[column]} is required, but missing from the cursor")
+}
@@ -18,6 +18,33 @@ import android.provider.BaseColumns;
 public abstract class DataContract {
 
     public static final String CONTENT_AUTHORITY = "edu.uofk.eeese.eeese.provider";
+
+    /**
+     * Provider method reporting the change notification counters
+     */
+    public static final String METHOD_NOTIFICATION_STATS = "notification_stats";
+    public static final String KEY_NOTIFICATIONS_REQUESTED = "requested";
+    public static final String KEY_NOTIFICATIONS_SENT = "sent";
+    public static final String KEY_NOTIFICATIONS_SUPPRESSED = "suppressed";
+
+    /**
+     * Provider methods holding the batches applied between them in one transaction, so a sync
+     * can write in bounded batches and still be stored as a whole. Both are called on the thread
+     * applying the batches, END_BATCHES with KEY_SUCCESSFUL set when the batches are kept
+     */
+    public static final String METHOD_BEGIN_BATCHES = "begin_batches";
+    public static final String METHOD_END_BATCHES = "end_batches";
+    public static final String KEY_SUCCESSFUL = "successful";
+
+    /**
+     * Query parameter of the collection URIs limiting the number of rows returned
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+    /**
+     * Query parameter of the collection URIs skipping rows before the limited ones
+     */
+    public static final String QUERY_PARAMETER_OFFSET = "offset";
+
     private static final Uri BASE_URI =
             new Uri.Builder()
                     .scheme(ContentResolver.SCHEME_CONTENT)
@@ -30,6 +57,15 @@ public abstract class DataContract {
         public static final Uri CONTENT_URI = BASE_URI.buildUpon()
                 .appendPath(CONTENT_PATH)
                 .build();
+
+        /*
+         * Single projects by their project id. They are not under CONTENT_URI,
+         * so that observers of a project are not notified of changes to the whole collection
+         */
+        public static final String ITEM_CONTENT_PATH = "project";
+        public static final Uri ITEM_CONTENT_URI = BASE_URI.buildUpon()
+                .appendPath(ITEM_CONTENT_PATH)
+                .build();
         public static final String ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/vnd.edu.uofk.eeese.eeese.project";
         public static final String ITEM_DIR_TYPE =
@@ -42,7 +78,16 @@ public abstract class DataContract {
         public static final String COLUMN_PROJECT_HEAD = "head";
         public static final String COLUMN_PROJECT_DESC = "desc";
         public static final String COLUMN_PROJECT_CATEGORY = "category";
+        /*
+         * Not a column of the table, the prerequisites are stored in PrerequisiteEntry and
+         * ProjectPrerequisiteEntry, and the provider writes and reads them through this column
+         */
         public static final String COLUMN_PROJECT_PREREQS = "prereqs";
+        public static final String COLUMN_PROJECT_HASH = "hash";
+
+        public static Uri itemUri(String projectId) {
+            return ITEM_CONTENT_URI.buildUpon().appendPath(projectId).build();
+        }
     }
 
     public static abstract class EventEntry implements BaseColumns {
@@ -52,6 +97,15 @@ public abstract class DataContract {
                 .appendPath(CONTENT_PATH)
                 .build();
 
+        /*
+         * Single events by their event id. They are not under CONTENT_URI,
+         * so that observers of an event are not notified of changes to the whole collection
+         */
+        public static final String ITEM_CONTENT_PATH = "event";
+        public static final Uri ITEM_CONTENT_URI = BASE_URI.buildUpon()
+                .appendPath(ITEM_CONTENT_PATH)
+                .build();
+
         public static final String ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/vnd.edu.uofk.eeese.eeese.event";
         public static final String ITEM_DIR_TYPE =
@@ -62,8 +116,80 @@ public abstract class DataContract {
         public static final String COLUMN_EVENT_NAME = "name";
         public static final String COLUMN_EVENT_DESC = "desc";
         public static final String COLUMN_EVENT_IMAGE_URI = "imageUri";
-        public static final String COLUMN_EVENT_LOCATION = "location";
+        /*
+         * The location in degrees, null when the event has none. The latitude band is
+         * DataUtils.Events.latitudeBand of the latitude, and indexes the location with the
+         * longitude, so a bounding box is searched as a longitude range in each band it spans
+         */
+        public static final String COLUMN_EVENT_LATITUDE = "latitude";
+        public static final String COLUMN_EVENT_LONGITUDE = "longitude";
+        public static final String COLUMN_EVENT_LATITUDE_BAND = "latitude_band";
+        /*
+         * The start and end are stored as epoch millis, with the zone offset of each in millis
+         * next to it, so they can be compared and indexed without parsing any text
+         */
         public static final String COLUMN_EVENT_START_DATE = "start";
+        public static final String COLUMN_EVENT_START_OFFSET = "start_offset";
         public static final String COLUMN_EVENT_END_DATE = "end";
+        public static final String COLUMN_EVENT_END_OFFSET = "end_offset";
+        public static final String COLUMN_EVENT_HASH = "hash";
+
+        public static Uri itemUri(String eventId) {
+            return ITEM_CONTENT_URI.buildUpon().appendPath(eventId).build();
+        }
+    }
+
+    /**
+     * Every distinct prerequisite, stored once however many projects require it
+     */
+    public static abstract class PrerequisiteEntry implements BaseColumns {
+
+        public static final String TABLE_NAME = "prerequisites";
+        public static final String COLUMN_PREREQUISITE_NAME = "name";
+    }
+
+    /**
+     * The prerequisites of every project, in their order
+     */
+    public static abstract class ProjectPrerequisiteEntry {
+
+        public static final String TABLE_NAME = "project_prerequisites";
+        public static final String COLUMN_PROJECT_ID = "projectid";
+        public static final String COLUMN_PREREQUISITE = "prerequisite";
+        public static final String COLUMN_POSITION = "position";
+    }
+
+    /**
+     * The full-text index of the projects, one row per project with the project's _id as its
+     * docid. The indexed text is folded by DataUtils.Search, and kept up to date by triggers
+     */
+    public static abstract class ProjectSearchEntry {
+
+        public static final String TABLE_NAME = "projects_search";
+        public static final String COLUMN_DOCID = "docid";
+        public static final String COLUMN_PROJECT_NAME = "name";
+        public static final String COLUMN_PROJECT_HEAD = "head";
+        public static final String COLUMN_PROJECT_DESC = "desc";
+    }
+
+    /**
+     * The full-text index of the events, like ProjectSearchEntry
+     */
+    public static abstract class EventSearchEntry {
+
+        public static final String TABLE_NAME = "events_search";
+        public static final String COLUMN_DOCID = "docid";
+        public static final String COLUMN_EVENT_NAME = "name";
+        public static final String COLUMN_EVENT_DESC = "desc";
+    }
+
+    /**
+     * Per table sync bookkeeping, only used by the sync adapter and not exposed by the provider
+     */
+    public static abstract class SyncStateEntry implements BaseColumns {
+
+        public static final String TABLE_NAME = "sync_state";
+        public static final String COLUMN_SYNC_STATE_TABLE = "tablename";
+        public static final String COLUMN_SYNC_STATE_WATERMARK = "watermark";
     }
 }
@@ -12,23 +12,83 @@ package edu.uofk.eeese.eeese.data
 
 import android.annotation.SuppressLint
 import android.content.ContentProvider
+import android.content.ContentProviderOperation
+import android.content.ContentProviderResult
 import android.content.ContentUris
 import android.content.ContentValues
 import android.content.UriMatcher
 import android.database.Cursor
 import android.net.Uri
+import android.os.Bundle
+import android.util.Log
+import edu.uofk.eeese.eeese.R
 import edu.uofk.eeese.eeese.data.DataContract.EventEntry
+import edu.uofk.eeese.eeese.data.DataContract.PrerequisiteEntry
 import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry
+import edu.uofk.eeese.eeese.data.DataContract.ProjectPrerequisiteEntry
 import edu.uofk.eeese.eeese.data.database.DatabaseHelper
+import io.reactivex.schedulers.Schedulers
 
 class DataProvider : ContentProvider() {
 
+    companion object {
+        private val TAG = DataProvider::class.java.name
+    }
+
     private val PROJECT = 100
     private val PROJECTS = 101
     private val EVENT = 200
     private val EVENTS = 201
+    private val PROJECT_WITH_ID = 102
+    private val EVENT_WITH_ID = 202
+
+    private val YIELD_SLEEP_MS = 0L
+
+    /*
+     * Past this many changed rows of one table in a batch, observers of single rows are notified
+     * through the root of their table's item URIs, instead of a notification for every row
+     */
+    private val MAX_ITEM_NOTIFICATIONS = 20
+
+    private val PREREQUISITES_COLUMN =
+            "(SELECT group_concat(" +
+                    "${ProjectPrerequisiteEntry.TABLE_NAME}.${ProjectPrerequisiteEntry.COLUMN_POSITION}" +
+                    " || '${DataUtils.Projects.POSITION_SEPARATOR}' || " +
+                    "${PrerequisiteEntry.TABLE_NAME}.${PrerequisiteEntry.COLUMN_PREREQUISITE_NAME}, " +
+                    "'${DataUtils.Projects.PREREQUISITE_SEPARATOR}') " +
+                    "FROM ${ProjectPrerequisiteEntry.TABLE_NAME} " +
+                    "JOIN ${PrerequisiteEntry.TABLE_NAME} " +
+                    "ON ${PrerequisiteEntry.TABLE_NAME}.${PrerequisiteEntry._ID} = " +
+                    "${ProjectPrerequisiteEntry.TABLE_NAME}.${ProjectPrerequisiteEntry.COLUMN_PREREQUISITE} " +
+                    "WHERE ${ProjectPrerequisiteEntry.TABLE_NAME}.${ProjectPrerequisiteEntry.COLUMN_PROJECT_ID} = " +
+                    "${ProjectEntry.TABLE_NAME}.${ProjectEntry.COLUMN_PROJECT_ID}) " +
+                    "AS ${ProjectEntry.COLUMN_PROJECT_PREREQS}"
+    private val DELETE_PROJECT_PREREQUISITES =
+            "DELETE FROM ${ProjectPrerequisiteEntry.TABLE_NAME} " +
+                    "WHERE ${ProjectPrerequisiteEntry.COLUMN_PROJECT_ID} = ?"
+    private val INSERT_PREREQUISITE =
+            "INSERT OR IGNORE INTO ${PrerequisiteEntry.TABLE_NAME} " +
+                    "(${PrerequisiteEntry.COLUMN_PREREQUISITE_NAME}) VALUES (?)"
+    private val INSERT_PROJECT_PREREQUISITE =
+            "INSERT INTO ${ProjectPrerequisiteEntry.TABLE_NAME} " +
+                    "(" +
+                    "${ProjectPrerequisiteEntry.COLUMN_PROJECT_ID}, " +
+                    "${ProjectPrerequisiteEntry.COLUMN_POSITION}, " +
+                    "${ProjectPrerequisiteEntry.COLUMN_PREREQUISITE}" +
+                    ") " +
+                    "SELECT ?, ?, ${PrerequisiteEntry._ID} FROM ${PrerequisiteEntry.TABLE_NAME} " +
+                    "WHERE ${PrerequisiteEntry.COLUMN_PREREQUISITE_NAME} = ?"
 
-    private val dbHelper = lazy { DatabaseHelper(context) }
+    private val dbHelper = lazy { DatabaseHelper.getInstance(context) }
+    private val notifications = lazy {
+        NotificationCoalescer<Uri>(
+                debounceMillis = context.resources
+                        .getInteger(R.integer.change_notification_debounce).toLong(),
+                scheduler = Schedulers.single(),
+                collapse = this::collapseItemNotifications) {
+            context.contentResolver.notifyChange(it, null, false)
+        }
+    }
     private val matcher = UriMatcher(UriMatcher.NO_MATCH)
 
     init {
@@ -36,25 +96,41 @@ class DataProvider : ContentProvider() {
         matcher.addURI(DataContract.CONTENT_AUTHORITY, ProjectEntry.CONTENT_PATH + "/#", PROJECT)
         matcher.addURI(DataContract.CONTENT_AUTHORITY, EventEntry.CONTENT_PATH, EVENTS)
         matcher.addURI(DataContract.CONTENT_AUTHORITY, EventEntry.CONTENT_PATH + "/#", EVENT)
+        matcher.addURI(DataContract.CONTENT_AUTHORITY,
+                ProjectEntry.ITEM_CONTENT_PATH + "/*", PROJECT_WITH_ID)
+        matcher.addURI(DataContract.CONTENT_AUTHORITY,
+                EventEntry.ITEM_CONTENT_PATH + "/*", EVENT_WITH_ID)
     }
 
     override fun onCreate(): Boolean = true
 
     override fun insert(uri: Uri?, values: ContentValues?): Uri = when (matcher.match(uri)) {
         PROJECTS -> {
-            val id = dbHelper.value.writableDatabase
-                    .insertOrThrow(ProjectEntry.TABLE_NAME, null, values)
-            context.contentResolver.notifyChange(ProjectEntry.CONTENT_URI, null, false)
-            ContentUris.withAppendedId(ProjectEntry.CONTENT_URI, id)
+            val db = dbHelper.value.writableDatabase
+            db.beginTransaction()
+            try {
+                val id = db.insertOrThrow(ProjectEntry.TABLE_NAME, null,
+                        withoutPrerequisites(values))
+                writePrerequisites(values)
+                db.setTransactionSuccessful()
+                notifyProjects(listOfNotNull(values?.getAsString(ProjectEntry.COLUMN_PROJECT_ID)))
+                ContentUris.withAppendedId(ProjectEntry.CONTENT_URI, id)
+            } finally {
+                db.endTransaction()
+            }
         }
         EVENTS -> {
             val id = dbHelper.value.writableDatabase.insertOrThrow(EventEntry.TABLE_NAME, null, values)
-            context.contentResolver.notifyChange(EventEntry.CONTENT_URI, null, false)
+            notifyEvents(listOfNotNull(values?.getAsString(EventEntry.COLUMN_EVENT_ID)))
             ContentUris.withAppendedId(EventEntry.CONTENT_URI, id)
         }
         else -> throw UnsupportedOperationException("Unknown URI")
     }
 
+    /**
+     * Inserts all the values in a single transaction,
+     * through the compiled statements of [DatabaseHelper.statements]
+     */
     override fun bulkInsert(uri: Uri?, values: Array<out ContentValues>?): Int =
             when (matcher.match(uri)) {
                 PROJECTS -> {
@@ -62,11 +138,15 @@ class DataProvider : ContentProvider() {
                     db.beginTransaction()
                     try {
                         val n = values?.fold(0) { acc, values ->
-                            db.insertOrThrow(ProjectEntry.TABLE_NAME, null, values)
+                            dbHelper.value.statements.insert(ProjectEntry.TABLE_NAME,
+                                    withoutPrerequisites(values)!!)
+                            writePrerequisites(values)
                             acc + 1
                         } ?: 0
                         db.setTransactionSuccessful()
-                        context.contentResolver.notifyChange(ProjectEntry.CONTENT_URI, null, false)
+                        notifyProjects(values?.mapNotNull {
+                            it.getAsString(ProjectEntry.COLUMN_PROJECT_ID)
+                        } ?: emptyList())
                         n
                     } finally {
                         db.endTransaction()
@@ -77,11 +157,13 @@ class DataProvider : ContentProvider() {
                     db.beginTransaction()
                     try {
                         val n = values?.fold(0) { acc, values ->
-                            db.insertOrThrow(EventEntry.TABLE_NAME, null, values)
+                            dbHelper.value.statements.insert(EventEntry.TABLE_NAME, values)
                             acc + 1
                         } ?: 0
                         db.setTransactionSuccessful()
-                        context.contentResolver.notifyChange(EventEntry.CONTENT_URI, null, false)
+                        notifyEvents(values?.mapNotNull {
+                            it.getAsString(EventEntry.COLUMN_EVENT_ID)
+                        } ?: emptyList())
                         n
                     } finally {
                         db.endTransaction()
@@ -90,26 +172,65 @@ class DataProvider : ContentProvider() {
                 else -> throw UnsupportedOperationException("unknown URI")
             }
 
+    /**
+     * Applies all the operations in a single transaction. Only where an operation allows it
+     * is the transaction committed and reopened if another thread is waiting on the database,
+     * a batch without such operations, like a sync, is applied entirely or not at all.
+     * Change notifications are held until the batch is done, and sent once for every URI.
+     */
+    override fun applyBatch(operations: ArrayList<ContentProviderOperation>?):
+            Array<ContentProviderResult?> {
+        if (operations == null || operations.isEmpty()) {
+            return emptyArray()
+        }
+        val db = dbHelper.value.writableDatabase
+        notifications.value.beginBatch()
+        val results = try {
+            db.beginTransaction()
+            try {
+                val results = arrayOfNulls<ContentProviderResult>(operations.size)
+                for ((i, operation) in operations.withIndex()) {
+                    if (i > 0 && operation.isYieldAllowed) {
+                        db.yieldIfContendedSafely(YIELD_SLEEP_MS)
+                    }
+                    results[i] = operation.apply(this, results, i)
+                }
+                db.setTransactionSuccessful()
+                results
+            } finally {
+                db.endTransaction()
+            }
+        } catch (e: Exception) {
+            // The batch was rolled back, so nothing it notified has changed
+            notifications.value.cancelBatch()
+            throw e
+        }
+        notifications.value.endBatch()
+        Log.d(TAG, "change notifications: ${notifications.value.requested} requested, " +
+                "${notifications.value.suppressed} suppressed")
+        return results
+    }
+
     @SuppressLint("Recycle")
     override fun query(uri: Uri?, projection: Array<out String>?,
                        selection: String?, selectionArgs: Array<out String>?,
                        orderBy: String?): Cursor = when (matcher.match(uri)) {
         PROJECTS -> dbHelper.value
                 .readableDatabase
-                .query(ProjectEntry.TABLE_NAME, projection,
-                        selection, selectionArgs, null, null, orderBy)
+                .query(ProjectEntry.TABLE_NAME, projectProjection(projection),
+                        selection, selectionArgs, null, null, orderBy, limit(uri))
         PROJECT -> {
             val id = ContentUris.parseId(uri)
             dbHelper.value
                     .readableDatabase
-                    .query(ProjectEntry.TABLE_NAME, projection,
+                    .query(ProjectEntry.TABLE_NAME, projectProjection(projection),
                             ProjectEntry._ID + " = ?", arrayOf(id.toString()),
                             null, null, orderBy)
         }
         EVENTS -> dbHelper.value
                 .readableDatabase
                 .query(EventEntry.TABLE_NAME, projection,
-                        selection, selectionArgs, null, null, orderBy)
+                        selection, selectionArgs, null, null, orderBy, limit(uri))
         EVENT -> {
             val id = ContentUris.parseId(uri)
             dbHelper.value
@@ -118,43 +239,153 @@ class DataProvider : ContentProvider() {
                             EventEntry._ID + " = ?", arrayOf(id.toString()),
                             null, null, orderBy)
         }
+        PROJECT_WITH_ID -> dbHelper.value
+                .readableDatabase
+                .query(ProjectEntry.TABLE_NAME, projectProjection(projection),
+                        ProjectEntry.COLUMN_PROJECT_ID + " = ?", arrayOf(uri?.lastPathSegment),
+                        null, null, orderBy)
+        EVENT_WITH_ID -> dbHelper.value
+                .readableDatabase
+                .query(EventEntry.TABLE_NAME, projection,
+                        EventEntry.COLUMN_EVENT_ID + " = ?", arrayOf(uri?.lastPathSegment),
+                        null, null, orderBy)
         else -> throw UnsupportedOperationException("Unknown URI")
     }
 
+    /**
+     * Updates the projects with the given ids, and replaces their prerequisites
+     * if the values have them
+     */
+    private fun updateProjects(values: ContentValues?,
+                               selection: String?, selectionArgs: Array<out String>?,
+                               ids: List<String>): Int {
+        val db = dbHelper.value.writableDatabase
+        db.beginTransaction()
+        try {
+            val projectValues = withoutPrerequisites(values)
+            val changes = if (projectValues != null && projectValues.size() > 0) {
+                db.update(ProjectEntry.TABLE_NAME, projectValues, selection, selectionArgs)
+            } else {
+                ids.size
+            }
+            if (values != null && values.containsKey(ProjectEntry.COLUMN_PROJECT_PREREQS)) {
+                val prerequisites = values.getAsString(ProjectEntry.COLUMN_PROJECT_PREREQS)
+                val newId = values.getAsString(ProjectEntry.COLUMN_PROJECT_ID)
+                for (id in ids) {
+                    writePrerequisites(id, if (newId == null || newId == id) prerequisites else null)
+                }
+                if (newId != null) {
+                    writePrerequisites(newId, prerequisites)
+                }
+            }
+            db.setTransactionSuccessful()
+            return changes
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    /**
+     * The values of the projects table, the prerequisites are stored in their own tables
+     */
+    private fun withoutPrerequisites(values: ContentValues?): ContentValues? {
+        if (values == null || !values.containsKey(ProjectEntry.COLUMN_PROJECT_PREREQS)) {
+            return values
+        }
+        val projectValues = ContentValues(values)
+        projectValues.remove(ProjectEntry.COLUMN_PROJECT_PREREQS)
+        return projectValues
+    }
+
+    private fun writePrerequisites(values: ContentValues?) {
+        val id = values?.getAsString(ProjectEntry.COLUMN_PROJECT_ID) ?: return
+        if (values.containsKey(ProjectEntry.COLUMN_PROJECT_PREREQS)) {
+            writePrerequisites(id, values.getAsString(ProjectEntry.COLUMN_PROJECT_PREREQS))
+        }
+    }
+
+    /**
+     * Replaces the prerequisites of the project with the encoded ones, storing each distinct
+     * prerequisite only once. Must be called inside a transaction
+     */
+    private fun writePrerequisites(projectId: String, encoded: String?) {
+        val statements = dbHelper.value.statements
+        val delete = statements.compiled(DELETE_PROJECT_PREREQUISITES)
+        delete.bindString(1, projectId)
+        delete.executeUpdateDelete()
+
+        val prerequisites = DataUtils.Projects.prerequisites(encoded ?: "")
+        if (prerequisites.isEmpty()) {
+            return
+        }
+        val insertPrerequisite = statements.compiled(INSERT_PREREQUISITE)
+        val insertProjectPrerequisite = statements.compiled(INSERT_PROJECT_PREREQUISITE)
+        for ((position, prerequisite) in prerequisites.withIndex()) {
+            insertPrerequisite.bindString(1, prerequisite)
+            insertPrerequisite.executeInsert()
+            insertProjectPrerequisite.bindString(1, projectId)
+            insertProjectPrerequisite.bindLong(2, position.toLong())
+            insertProjectPrerequisite.bindString(3, prerequisite)
+            insertProjectPrerequisite.executeInsert()
+        }
+    }
+
+    /**
+     * Replaces the prerequisites column with a subquery joining the prerequisites of the project,
+     * so only the queries asking for them pay for the join
+     */
+    private fun projectProjection(projection: Array<out String>?): Array<out String>? =
+            projection?.map {
+                if (it == ProjectEntry.COLUMN_PROJECT_PREREQS) PREREQUISITES_COLUMN else it
+            }?.toTypedArray()
+
+    /**
+     * The LIMIT clause of the query parameters of the URI, as "offset,limit" when it has an offset
+     */
+    private fun limit(uri: Uri?): String? {
+        val limit = uri?.getQueryParameter(DataContract.QUERY_PARAMETER_LIMIT) ?: return null
+        val offset = uri.getQueryParameter(DataContract.QUERY_PARAMETER_OFFSET)
+        return if (offset == null) limit else "$offset,$limit"
+    }
+
     override fun update(uri: Uri?, values: ContentValues?,
                         selection: String?, selectionArgs: Array<out String>?): Int =
             when (matcher.match(uri)) {
                 PROJECTS -> {
-                    val changes = dbHelper.value
-                            .writableDatabase
-                            .update(ProjectEntry.TABLE_NAME, values, selection, selectionArgs)
-                    context.contentResolver.notifyChange(ProjectEntry.CONTENT_URI, null, false)
+                    val ids = projectIds(selection, selectionArgs)
+                    val changes = updateProjects(values, selection, selectionArgs, ids)
+                    notifyProjects(ids + listOfNotNull(
+                            values?.getAsString(ProjectEntry.COLUMN_PROJECT_ID)))
                     changes
                 }
 
                 PROJECT -> {
                     val id = ContentUris.parseId(uri)
-                    val changes = dbHelper.value
-                            .writableDatabase
-                            .update(ProjectEntry.TABLE_NAME, values,
-                                    "${ProjectEntry._ID} = ?", arrayOf(id.toString()))
-                    context.contentResolver.notifyChange(ProjectEntry.CONTENT_URI, null, false)
+                    val ids = projectIds("${ProjectEntry._ID} = ?", arrayOf(id.toString()))
+                    val changes = updateProjects(values,
+                            "${ProjectEntry._ID} = ?", arrayOf(id.toString()), ids)
+                    notifyProjects(ids + listOfNotNull(
+                            values?.getAsString(ProjectEntry.COLUMN_PROJECT_ID)))
                     changes
                 }
                 EVENTS -> {
+                    val ids = eventIds(selection, selectionArgs)
                     val changes = dbHelper.value
                             .writableDatabase
                             .update(EventEntry.TABLE_NAME, values, selection, selectionArgs)
-                    context.contentResolver.notifyChange(EventEntry.CONTENT_URI, null, false)
+                    notifyEvents(ids + listOfNotNull(
+                            values?.getAsString(EventEntry.COLUMN_EVENT_ID)))
                     changes
                 }
                 EVENT -> {
                     val id = ContentUris.parseId(uri)
+                    val ids = eventIds("${EventEntry._ID} = ?", arrayOf(id.toString()))
                     val changes = dbHelper.value
                             .writableDatabase
                             .update(EventEntry.TABLE_NAME, values,
-                                    "${ProjectEntry._ID} = ?", arrayOf(id.toString()))
-                    context.contentResolver.notifyChange(EventEntry.CONTENT_URI, null, false)
+                                    "${EventEntry._ID} = ?", arrayOf(id.toString()))
+                    notifyEvents(ids + listOfNotNull(
+                            values?.getAsString(EventEntry.COLUMN_EVENT_ID)))
                     changes
                 }
                 else -> throw UnsupportedOperationException("Unknown URI")
@@ -163,46 +394,171 @@ class DataProvider : ContentProvider() {
     override fun delete(uri: Uri?, selection: String?, selectionArgs: Array<out String>?): Int =
             when (matcher.match(uri)) {
                 PROJECTS -> {
+                    val ids = projectIds(selection, selectionArgs)
                     val deletions = dbHelper.value
                             .writableDatabase
                             .delete(ProjectEntry.TABLE_NAME, selection, selectionArgs)
-                    context.contentResolver.notifyChange(ProjectEntry.CONTENT_URI, null, false)
+                    notifyProjects(ids)
                     deletions
                 }
                 PROJECT -> {
                     val id = ContentUris.parseId(uri)
+                    val ids = projectIds(ProjectEntry._ID + " = ?", arrayOf(id.toString()))
                     val deletions = dbHelper.value
                             .writableDatabase
                             .delete(ProjectEntry.TABLE_NAME,
                                     ProjectEntry._ID + " = ?", arrayOf(id.toString()))
-                    context.contentResolver.notifyChange(ProjectEntry.CONTENT_URI, null, false)
+                    notifyProjects(ids)
                     deletions
 
                 }
                 EVENTS -> {
+                    val ids = eventIds(selection, selectionArgs)
                     val deletions = dbHelper.value
                             .writableDatabase
                             .delete(EventEntry.TABLE_NAME, selection, selectionArgs)
-                    context.contentResolver.notifyChange(EventEntry.CONTENT_URI, null, false)
+                    notifyEvents(ids)
                     deletions
                 }
                 EVENT -> {
                     val id = ContentUris.parseId(uri)
+                    val ids = eventIds(EventEntry._ID + " = ?", arrayOf(id.toString()))
                     val deletions = dbHelper.value
                             .writableDatabase
                             .delete(EventEntry.TABLE_NAME,
                                     EventEntry._ID + " = ?", arrayOf(id.toString()))
-                    context.contentResolver.notifyChange(EventEntry.CONTENT_URI, null, false)
+                    notifyEvents(ids)
                     deletions
                 }
                 else -> throw UnsupportedOperationException("Unknown URI")
             }
 
+    /**
+     * Notifies the observers of the projects collection, and of every one of the given projects
+     */
+    private fun notifyProjects(ids: Collection<String>) {
+        notifications.value.notifyChange(ProjectEntry.CONTENT_URI)
+        ids.forEach { notifications.value.notifyChange(ProjectEntry.itemUri(it)) }
+    }
+
+    /**
+     * Notifies the observers of the events collection, and of every one of the given events
+     */
+    private fun notifyEvents(ids: Collection<String>) {
+        notifications.value.notifyChange(EventEntry.CONTENT_URI)
+        ids.forEach { notifications.value.notifyChange(EventEntry.itemUri(it)) }
+    }
+
+    private fun projectIds(selection: String?, selectionArgs: Array<out String>?): List<String> =
+            ids(ProjectEntry.TABLE_NAME, ProjectEntry.COLUMN_PROJECT_ID, selection, selectionArgs)
+
+    private fun eventIds(selection: String?, selectionArgs: Array<out String>?): List<String> =
+            ids(EventEntry.TABLE_NAME, EventEntry.COLUMN_EVENT_ID, selection, selectionArgs)
+
+    /**
+     * The ids of the rows a write with the given selection is about to touch,
+     * read before the write so that deleted rows are included
+     */
+    private fun ids(table: String, idColumn: String,
+                    selection: String?, selectionArgs: Array<out String>?): List<String> {
+        val cursor = dbHelper.value.writableDatabase
+                .query(table, arrayOf(idColumn), selection, selectionArgs, null, null, null)
+        try {
+            val ids = ArrayList<String>(cursor.count)
+            while (cursor.moveToNext()) {
+                cursor.getString(0)?.let { ids.add(it) }
+            }
+            return ids
+        } finally {
+            cursor.close()
+        }
+    }
+
+    /**
+     * Replaces the item notifications of a table with a single notification on the root of its
+     * item URIs when there are more than [MAX_ITEM_NOTIFICATIONS] of them,
+     * which reaches every row observer at once
+     */
+    private fun collapseItemNotifications(uris: Collection<Uri>): Collection<Uri> {
+        val projectItems = uris.count { isItemOf(it, ProjectEntry.ITEM_CONTENT_URI) }
+        val eventItems = uris.count { isItemOf(it, EventEntry.ITEM_CONTENT_URI) }
+        if (projectItems <= MAX_ITEM_NOTIFICATIONS && eventItems <= MAX_ITEM_NOTIFICATIONS) {
+            return uris
+        }
+        val collapsed = LinkedHashSet<Uri>()
+        val collapseProjects = projectItems > MAX_ITEM_NOTIFICATIONS
+        val collapseEvents = eventItems > MAX_ITEM_NOTIFICATIONS
+        for (uri in uris) {
+            collapsed += when {
+                collapseProjects && isItemOf(uri, ProjectEntry.ITEM_CONTENT_URI) ->
+                    ProjectEntry.ITEM_CONTENT_URI
+                collapseEvents && isItemOf(uri, EventEntry.ITEM_CONTENT_URI) ->
+                    EventEntry.ITEM_CONTENT_URI
+                else -> uri
+            }
+        }
+        return collapsed
+    }
+
+    private fun isItemOf(uri: Uri, itemRoot: Uri) =
+            uri.pathSegments.size == 2 && uri.pathSegments[0] == itemRoot.lastPathSegment
+
+    /**
+     * Supports [DataContract.METHOD_NOTIFICATION_STATS], which reports how many change
+     * notifications were requested, and how many of them were coalesced into others.
+     *
+     * Also supports [DataContract.METHOD_BEGIN_BATCHES] and [DataContract.METHOD_END_BATCHES],
+     * which hold the batches applied between them in one transaction, and their notifications
+     * until it commits. The batches are nested in it, so their operations must not allow yields
+     */
+    override fun call(method: String?, arg: String?, extras: Bundle?): Bundle? = when (method) {
+        DataContract.METHOD_NOTIFICATION_STATS -> {
+            val stats = Bundle()
+            stats.putLong(DataContract.KEY_NOTIFICATIONS_REQUESTED, notifications.value.requested)
+            stats.putLong(DataContract.KEY_NOTIFICATIONS_SENT, notifications.value.sent)
+            stats.putLong(DataContract.KEY_NOTIFICATIONS_SUPPRESSED, notifications.value.suppressed)
+            stats
+        }
+        DataContract.METHOD_BEGIN_BATCHES -> {
+            notifications.value.beginBatch()
+            dbHelper.value.writableDatabase.beginTransaction()
+            null
+        }
+        DataContract.METHOD_END_BATCHES -> {
+            endBatches(extras?.getBoolean(DataContract.KEY_SUCCESSFUL) ?: false)
+            null
+        }
+        else -> super.call(method, arg, extras)
+    }
+
+    /**
+     * Commits the batches applied since [DataContract.METHOD_BEGIN_BATCHES] if [successful],
+     * and rolls them back otherwise. Their notifications are only sent when they are committed
+     */
+    private fun endBatches(successful: Boolean) {
+        val db = dbHelper.value.writableDatabase
+        try {
+            try {
+                if (successful) {
+                    db.setTransactionSuccessful()
+                }
+            } finally {
+                db.endTransaction()
+            }
+        } catch (e: Exception) {
+            notifications.value.cancelBatch()
+            throw e
+        }
+        if (successful) notifications.value.endBatch() else notifications.value.cancelBatch()
+    }
+
     override fun getType(uri: Uri?): String = when (matcher.match(uri)) {
         PROJECTS -> ProjectEntry.ITEM_DIR_TYPE
         PROJECT -> ProjectEntry.ITEM_TYPE
         EVENTS -> EventEntry.ITEM_DIR_TYPE
         EVENT -> EventEntry.ITEM_TYPE
+        PROJECT_WITH_ID -> ProjectEntry.ITEM_TYPE
+        EVENT_WITH_ID -> EventEntry.ITEM_TYPE
         else -> throw UnsupportedOperationException("Unknown URI")
     }
 }
@@ -14,10 +14,71 @@ import android.content.ContentValues
 import android.database.Cursor
 import android.net.Uri
 import org.joda.time.DateTime
-import org.joda.time.format.ISODateTimeFormat
-import java.text.ParseException
+import org.joda.time.DateTimeZone
 
 object DataUtils {
+
+    /**
+     * The id and content hash of a stored row, enough to tell whether it changed
+     */
+    data class RowHash(val id: String, val hash: Long)
+
+    private const val FNV_OFFSET_BASIS = -3750763034362895579L // 0xcbf29ce484222325
+    private const val FNV_PRIME = 1099511628211L // 0x100000001b3
+    private const val NULL_MARKER = 0xFFL
+    private const val FIELD_SEPARATOR = 0x1FL
+
+    /**
+     * A 64-bit FNV-1a hash of the string representations of the given fields.
+     * Unlike [Any.hashCode] it is stable across processes, so it can be persisted
+     */
+    fun hash(vararg fields: Any?): Long {
+        var hash = FNV_OFFSET_BASIS
+        for (field in fields) {
+            val value = field?.toString()
+            if (value == null) {
+                hash = (hash xor NULL_MARKER) * FNV_PRIME
+            } else {
+                for (char in value) {
+                    hash = (hash xor char.toLong()) * FNV_PRIME
+                }
+            }
+            hash = (hash xor FIELD_SEPARATOR) * FNV_PRIME
+        }
+        return hash
+    }
+
+    /**
+     * Lazily reads the rows of the cursor, the cursor is closed once all of them are read
+     */
+    fun <T> rows(cursor: Cursor, read: (Cursor) -> T): Iterable<T> = object : Iterable<T> {
+        override fun iterator(): Iterator<T> = object : Iterator<T> {
+            override fun hasNext(): Boolean {
+                val hasNext = !cursor.isClosed && !cursor.isLast && cursor.count > 0
+                if (!hasNext && !cursor.isClosed) {
+                    cursor.close()
+                }
+                return hasNext
+            }
+
+            override fun next(): T {
+                if (!cursor.moveToNext()) {
+                    throw NoSuchElementException()
+                }
+                return read(cursor)
+            }
+        }
+    }
+
+    /**
+     * Reads the id and hash columns of every row in the cursor, without materializing the rows
+     */
+    fun hashes(cursor: Cursor, idColumn: String, hashColumn: String): Iterable<RowHash> {
+        val id = cursor.getColumnIndexOrThrow(idColumn)
+        val hash = cursor.getColumnIndexOrThrow(hashColumn)
+        return rows(cursor) { RowHash(it.getString(id), it.getLong(hash)) }
+    }
+
     object Projects {
 
         fun values(project: Project): ContentValues {
@@ -28,58 +89,115 @@ object DataUtils {
             values.put(DataContract.ProjectEntry.COLUMN_PROJECT_DESC, project.desc)
             values.put(DataContract.ProjectEntry.COLUMN_PROJECT_CATEGORY, category(project.category))
             values.put(DataContract.ProjectEntry.COLUMN_PROJECT_PREREQS, prerequisites(project.prerequisites))
+            values.put(DataContract.ProjectEntry.COLUMN_PROJECT_HASH, hash(project))
             return values
         }
 
-        fun projects(cursor: Cursor): List<Project> {
-            val projects = mutableListOf<Project>()
-            if (cursor.moveToFirst()) {
-                do {
-                    projects.add(projectFromRow(cursor))
-                } while (cursor.moveToNext())
-            }
+        /**
+         * The content hash stored with the project row, changes whenever any stored field does
+         */
+        fun hash(project: Project): Long = DataUtils.hash(
+                project.id, project.name, project.head, project.desc,
+                category(project.category), prerequisites(project.prerequisites))
 
-            cursor.close()
-            return projects
-        }
+        fun hashes(cursor: Cursor): Iterable<RowHash> = hashes(cursor,
+                DataContract.ProjectEntry.COLUMN_PROJECT_ID,
+                DataContract.ProjectEntry.COLUMN_PROJECT_HASH)
 
-        fun project(cursor: Cursor): Project {
-            if (!cursor.moveToFirst()) {
-                throw RuntimeException("No project exists")
-            }
-            val project = projectFromRow(cursor)
+        /**
+         * The columns read by [Mapper]
+         */
+        @JvmField val PROJECTION = arrayOf(
+                DataContract.ProjectEntry.COLUMN_PROJECT_ID,
+                DataContract.ProjectEntry.COLUMN_PROJECT_NAME,
+                DataContract.ProjectEntry.COLUMN_PROJECT_HEAD,
+                DataContract.ProjectEntry.COLUMN_PROJECT_DESC,
+                DataContract.ProjectEntry.COLUMN_PROJECT_CATEGORY,
+                DataContract.ProjectEntry.COLUMN_PROJECT_PREREQS)
+
+        /**
+         * The columns read by [SummaryMapper], leaving out the long description and prerequisites
+         */
+        @JvmField val SUMMARY_PROJECTION = arrayOf(
+                DataContract.ProjectEntry.COLUMN_PROJECT_ID,
+                DataContract.ProjectEntry.COLUMN_PROJECT_NAME,
+                DataContract.ProjectEntry.COLUMN_PROJECT_HEAD)
 
-            cursor.close()
-            return project
+        /**
+         * The columns read by [summariesByCategory]
+         */
+        @JvmField val CATEGORY_SUMMARY_PROJECTION =
+                SUMMARY_PROJECTION + DataContract.ProjectEntry.COLUMN_PROJECT_CATEGORY
+
+        fun projects(cursor: Cursor): List<Project> = Mapper(cursor).readAll()
+
+        fun summaries(cursor: Cursor): List<ProjectSummary> = SummaryMapper(cursor).readAll()
+
+        /**
+         * Reads the summaries of the cursor grouped by their category, in the cursor's order,
+         * then closes it
+         */
+        fun summariesByCategory(cursor: Cursor): Map<ProjectCategory, List<ProjectSummary>> {
+            try {
+                val mapper = SummaryMapper(cursor)
+                val categoryColumn = cursor.getColumnIndexOrThrow(
+                        DataContract.ProjectEntry.COLUMN_PROJECT_CATEGORY)
+                val summaries = HashMap<ProjectCategory, MutableList<ProjectSummary>>()
+                cursor.moveToPosition(-1)
+                while (cursor.moveToNext()) {
+                    summaries.getOrPut(category(cursor.getInt(categoryColumn))) { ArrayList() }
+                            .add(mapper.read())
+                }
+                return summaries
+            } finally {
+                cursor.close()
+            }
         }
 
+        fun project(cursor: Cursor): Project =
+                Mapper(cursor).readFirst() ?: throw RuntimeException("No project exists")
 
         /**
-         * Reads project data from the current row in the cursor and returns it as a [Project].
-         * The method expects the cursor to be pointing to an appropriate row,
-         * and it does not close the cursor after it it reads the data
+         * Reads [Project]s from a cursor, a missing description or head is read as null,
+         * and missing prerequisites as an empty list
+         */
+        class Mapper(cursor: Cursor) : CursorMapper<Project>(cursor, PROJECTION) {
+            private companion object {
+                // The positions of the columns in PROJECTION
+                const val ID = 0
+                const val NAME = 1
+                const val HEAD = 2
+                const val DESC = 3
+                const val CATEGORY = 4
+                const val PREREQS = 5
+            }
 
-         * @param cursor the cursor to read the data from
-         * *
-         * @return a [Project] object representing the data read from the cursor row
-         */
-        // category will always be a legal value because its always saved as one
-        private fun projectFromRow(cursor: Cursor): Project {
-            val id = cursor.getString(
-                    cursor.getColumnIndexOrThrow(DataContract.ProjectEntry.COLUMN_PROJECT_ID))
-            val name = cursor.getString(
-                    cursor.getColumnIndexOrThrow(DataContract.ProjectEntry.COLUMN_PROJECT_NAME))
-            val head = cursor.getString(
-                    cursor.getColumnIndexOrThrow(DataContract.ProjectEntry.COLUMN_PROJECT_HEAD))
-            val desc = cursor.getString(
-                    cursor.getColumnIndexOrThrow(DataContract.ProjectEntry.COLUMN_PROJECT_DESC))
-            val category = cursor.getInt(
-                    cursor.getColumnIndexOrThrow(DataContract.ProjectEntry.COLUMN_PROJECT_CATEGORY))
-            val prerequisites = prerequisites(cursor.getString(
-                    cursor.getColumnIndexOrThrow(DataContract.ProjectEntry.COLUMN_PROJECT_PREREQS)))
-            return Project(id = id, name = name, head = head,
-                    desc = desc, category = category(category),
-                    prerequisites = prerequisites)
+            // Projects read from the same cursor share their prerequisite strings
+            private val interned = HashMap<String, String>()
+
+            // category will always be a legal value because its always saved as one
+            override fun read() = Project(
+                    id = requiredString(ID), name = requiredString(NAME),
+                    head = string(HEAD), desc = string(DESC),
+                    category = category(requiredInt(CATEGORY)),
+                    prerequisites = string(PREREQS)
+                            ?.let { encoded ->
+                                prerequisites(encoded) { name -> interned.getOrPut(name) { name } }
+                            }
+                            ?: emptyList())
+        }
+
+        class SummaryMapper(cursor: Cursor) :
+                CursorMapper<ProjectSummary>(cursor, SUMMARY_PROJECTION) {
+            private companion object {
+                // The positions of the columns in SUMMARY_PROJECTION
+                const val ID = 0
+                const val NAME = 1
+                const val HEAD = 2
+            }
+
+            override fun read() = ProjectSummary(
+                    id = requiredString(ID), name = requiredString(NAME), head = string(HEAD))
         }
 
         const val CATEGORY_SOFTWARE = 0
@@ -103,126 +221,243 @@ object DataUtils {
         }
 
         /**
-         * The database representation of the prerequisites list
+         * Separates the prerequisites in their encoded list
+         */
+        const val PREREQUISITE_SEPARATOR = "\u001F"
+        /**
+         * Separates the position of a prerequisite from it in their encoded list
+         */
+        const val POSITION_SEPARATOR = ":"
 
+        /**
+         * The encoding of the prerequisites list that the provider reads and writes through
+         * [DataContract.ProjectEntry.COLUMN_PROJECT_PREREQS]. Every prerequisite is prefixed with
+         * its position, so neither position separators inside them nor the order they are joined
+         * in matter. The provider joins the stored prerequisites with [PREREQUISITE_SEPARATOR]
+         * too, so a prerequisite containing it could not be read back and is rejected
+         *
          * @param prerequisites the prerequisites list
          * *
-         * @return the database representation of the list
+         * @return the encoded list
+         * *
+         * @throws IllegalArgumentException if a prerequisite contains [PREREQUISITE_SEPARATOR]
          */
-        fun prerequisites(prerequisites: List<String>) = prerequisites.joinToString(",")
+        fun prerequisites(prerequisites: List<String>): String =
+                prerequisites.withIndex().joinToString(PREREQUISITE_SEPARATOR) {
+                    require(!it.value.contains(PREREQUISITE_SEPARATOR)) {
+                        "Prerequisite ${it.index} contains the prerequisite separator"
+                    }
+                    "${it.index}$POSITION_SEPARATOR${it.value}"
+                }
 
         /**
-         * the prerequisites list represented by the database string
+         * The prerequisites list in the encoded list
 
-         * @param prerequisites the string stored in the database
+         * @param prerequisites the encoded list
+         * *
+         * @param intern returns the instance to use for a prerequisite,
+         * to share one instance of a prerequisite among all the projects requiring it
          * *
          * @return the prerequisites list
          */
-        fun prerequisites(prerequisites: String): List<String> = prerequisites.split(",")
+        @JvmOverloads
+        fun prerequisites(prerequisites: String,
+                          intern: (String) -> String = { it }): List<String> {
+            if (prerequisites.isEmpty()) {
+                return emptyList()
+            }
+            return prerequisites.split(PREREQUISITE_SEPARATOR)
+                    .map {
+                        val separator = it.indexOf(POSITION_SEPARATOR)
+                        Pair(it.substring(0, separator).toInt(),
+                                intern(it.substring(separator + POSITION_SEPARATOR.length)))
+                    }
+                    .sortedBy { it.first }
+                    .map { it.second }
+        }
+    }
+
+    /**
+     * Folds text for the full-text indexes, the same way for the indexed rows and the queries.
+     *
+     * The indexes use the simple tokenizer, which is available on every API level, folds the
+     * case of latin letters and keeps every other letter as it is. Arabic is folded here: the
+     * diacritics and tatweel are dropped, the letters written in more than one form are unified,
+     * and the Arabic punctuation becomes a separator
+     */
+    object Search {
+        private val TERM_SEPARATORS = Regex("[^\\p{L}\\p{Nd}]+")
+
+        private val ARABIC_FOLDING = linkedMapOf(
+                // Tatweel, tanween, harakat, shadda, sukun and the superscript alef
+                '\u0640' to "", '\u064B' to "", '\u064C' to "", '\u064D' to "",
+                '\u064E' to "", '\u064F' to "", '\u0650' to "", '\u0651' to "",
+                '\u0652' to "", '\u0670' to "",
+                // The forms of alef, hamza seats, taa marbuta and alef maqsura
+                '\u0622' to "\u0627", '\u0623' to "\u0627", '\u0625' to "\u0627",
+                '\u0671' to "\u0627", '\u0624' to "\u0648", '\u0626' to "\u064A",
+                '\u0629' to "\u0647", '\u0649' to "\u064A",
+                // Arabic comma, semicolon and question mark
+                '\u060C' to " ", '\u061B' to " ", '\u061F' to " ")
+
+        /**
+         * The text as it is indexed
+         */
+        fun fold(text: String): String {
+            val folded = StringBuilder(text.length)
+            for (char in text) {
+                val replacement = ARABIC_FOLDING[char]
+                if (replacement == null) folded.append(char) else folded.append(replacement)
+            }
+            return folded.toString()
+        }
+
+        /**
+         * An SQL expression of [column] folded like [fold], for the triggers maintaining
+         * the indexes, which can not call into the app
+         */
+        fun foldSql(column: String): String =
+                ARABIC_FOLDING.entries.fold(column) { expression, (from, to) ->
+                    "replace($expression, '$from', '$to')"
+                }
+
+        /**
+         * The terms of the query, folded and split on everything but letters and digits, the
+         * way the tokenizer splits the indexed text, so none of them is read as a full-text
+         * query operator. Like the indexed text, they are lower cased by the tokenizer
+         */
+        fun terms(query: String): List<String> = fold(query)
+                .split(TERM_SEPARATORS)
+                .filter { it.isNotEmpty() }
+
+        /**
+         * The full-text query matching rows that have every term as a prefix of a word,
+         * in [column] or in any column when it is null
+         */
+        fun match(terms: List<String>, column: String? = null): String =
+                terms.joinToString(" ") { if (column == null) "$it*" else "$column:$it*" }
     }
 
     object Events {
+        /**
+         * The height of the latitude bands that index the event locations, in degrees.
+         * About 11km, so a box around a city spans only a few bands
+         */
+        const val LATITUDE_BAND_DEGREES = 0.1
+
         fun values(event: Event): ContentValues {
             val values = ContentValues()
             values.put(DataContract.EventEntry.COLUMN_EVENT_ID, event.id)
             values.put(DataContract.EventEntry.COLUMN_EVENT_NAME, event.name)
             values.put(DataContract.EventEntry.COLUMN_EVENT_DESC, event.desc)
-            values.put(DataContract.EventEntry.COLUMN_EVENT_LOCATION,
-                    location(event.longitude, event.latitude))
+            values.put(DataContract.EventEntry.COLUMN_EVENT_LATITUDE, event.latitude)
+            values.put(DataContract.EventEntry.COLUMN_EVENT_LONGITUDE, event.longitude)
+            values.put(DataContract.EventEntry.COLUMN_EVENT_LATITUDE_BAND,
+                    event.latitude?.let { latitudeBand(it) })
             values.put(DataContract.EventEntry.COLUMN_EVENT_IMAGE_URI,
                     imageUri(event.imageUri))
-            values.put(DataContract.EventEntry.COLUMN_EVENT_START_DATE,
-                    date(event.start))
-            values.put(DataContract.EventEntry.COLUMN_EVENT_END_DATE,
-                    date(event.end))
+            values.put(DataContract.EventEntry.COLUMN_EVENT_START_DATE, event.start?.millis)
+            values.put(DataContract.EventEntry.COLUMN_EVENT_START_OFFSET, offset(event.start))
+            values.put(DataContract.EventEntry.COLUMN_EVENT_END_DATE, event.end?.millis)
+            values.put(DataContract.EventEntry.COLUMN_EVENT_END_OFFSET, offset(event.end))
+            values.put(DataContract.EventEntry.COLUMN_EVENT_HASH, hash(event))
             return values
 
         }
 
-        fun events(cursor: Cursor): List<Event> {
-            val events = mutableListOf<Event>()
-            if (cursor.moveToFirst()) {
-                do {
-                    events.add(eventFromRow(cursor))
-                } while (cursor.moveToNext())
-            }
-            cursor.close()
-            return events
-        }
+        /**
+         * The content hash stored with the event row, changes whenever any stored field does
+         */
+        fun hash(event: Event): Long = DataUtils.hash(
+                event.id, event.name, event.desc,
+                event.latitude, event.longitude, imageUri(event.imageUri),
+                event.start?.millis, offset(event.start), event.end?.millis, offset(event.end))
 
-        fun event(cursor: Cursor): Event {
-            if (!cursor.moveToFirst()) {
-                throw RuntimeException("No Event Exist")
-            }
-            val event = eventFromRow(cursor)
-            cursor.close()
-            return event
-        }
+        fun hashes(cursor: Cursor): Iterable<RowHash> = hashes(cursor,
+                DataContract.EventEntry.COLUMN_EVENT_ID,
+                DataContract.EventEntry.COLUMN_EVENT_HASH)
 
         /**
-         * Reads project data from the current row in the cursor and returns it as a [Event].
-         * The method expects the cursor to be pointing to an appropriate row,
-         * and it does not close the cursor after it it reads the data
-
-         * @param cursor the cursor to read the data from
-         * *
-         * @return a [Event] object representing the data read from the cursor row
-         */
-        private fun eventFromRow(cursor: Cursor): Event {
-            val id = cursor.getString(
-                    cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_ID))
-            val name = cursor.getString(
-                    cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_NAME))
-            val desc = cursor.getString(
-                    cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_DESC))
-            val location = cursor.getString(
-                    cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_LOCATION))
-            val (longitude, latitude) = location(location)
-            val imageUri = imageUri(
-                    cursor.getString(
-                            cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_IMAGE_URI)))
-
-            var start: DateTime? = null
-            try {
-                start = date(
-                        cursor.getString(
-                                cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_START_DATE)))
-            } catch (ignored: ParseException) {
-            }
+         * The columns read by [Mapper]
+         */
+        @JvmField val PROJECTION = arrayOf(
+                DataContract.EventEntry.COLUMN_EVENT_ID,
+                DataContract.EventEntry.COLUMN_EVENT_NAME,
+                DataContract.EventEntry.COLUMN_EVENT_DESC,
+                DataContract.EventEntry.COLUMN_EVENT_LATITUDE,
+                DataContract.EventEntry.COLUMN_EVENT_LONGITUDE,
+                DataContract.EventEntry.COLUMN_EVENT_IMAGE_URI,
+                DataContract.EventEntry.COLUMN_EVENT_START_DATE,
+                DataContract.EventEntry.COLUMN_EVENT_START_OFFSET,
+                DataContract.EventEntry.COLUMN_EVENT_END_DATE,
+                DataContract.EventEntry.COLUMN_EVENT_END_OFFSET)
+
+        fun events(cursor: Cursor): List<Event> = Mapper(cursor).readAll()
 
-            var end: DateTime? = null
-            try {
-                end = date(
-                        cursor.getString(
-                                cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_END_DATE)))
-            } catch (ignored: ParseException) {
-            }
+        /**
+         * The key of the event in the pages of events, see [START_ORDER]
+         */
+        fun start(event: Event): String = (event.start?.millis ?: Long.MIN_VALUE).toString()
 
-            return Event(id = id, name = name, desc = desc,
-                    imageUri = imageUri, longitude = longitude, latitude = latitude,
-                    start = start, end = end)
-        }
+        /**
+         * The start the pages of events are ordered and sought by. Events without a start are
+         * stored with a null one, which is read as the smallest start in both, so a page can end
+         * on one. The cast gives it the affinity of the column, so the keys compare as numbers
+         */
+        @JvmField val START_ORDER =
+                "CAST(ifnull(${DataContract.EventEntry.COLUMN_EVENT_START_DATE}, " +
+                        "${Long.MIN_VALUE}) AS INTEGER)"
 
         /**
-         * Get the database representation of the location specified by a longitude and a latitude value
+         * The latitude band the latitude falls in, bands are counted from the south pole up
          */
-        private fun location(longitude: String?, latitude: String?): String =
-                if (longitude != null && latitude != null
-                        && !longitude.isEmpty()
-                        && !latitude.isEmpty()) longitude + "," + latitude
-                else ""
+        fun latitudeBand(latitude: Double): Int =
+                Math.floor((latitude + 90) / LATITUDE_BAND_DEGREES).toInt()
+
+        fun event(cursor: Cursor): Event =
+                Mapper(cursor).readFirst() ?: throw RuntimeException("No Event Exist")
 
         /**
-         * Get the longitude, latitude pair from the location represented by the database location
+         * Reads [Event]s from a cursor, a missing location, image or date is read as null.
+         * The dates are read back in their stored offsets, sharing one zone per offset
          */
-        private fun location(location: String): Pair<String?, String?> =
-                if (location.isNotEmpty()) {
-                    val (longitude, latitude) = location.split(",")
-                    Pair(longitude, latitude)
-                } else {
-                    Pair(null, null)
-                }
+        class Mapper(cursor: Cursor) : CursorMapper<Event>(cursor, PROJECTION) {
+            private companion object {
+                // The positions of the columns in PROJECTION
+                const val ID = 0
+                const val NAME = 1
+                const val DESC = 2
+                const val LATITUDE = 3
+                const val LONGITUDE = 4
+                const val IMAGE_URI = 5
+                const val START = 6
+                const val START_OFFSET = 7
+                const val END = 8
+                const val END_OFFSET = 9
+            }
+
+            private val zones = HashMap<Int, DateTimeZone>()
+
+            override fun read(): Event {
+                val latitude = double(LATITUDE)
+                val longitude = double(LONGITUDE)
+                val located = latitude != null && longitude != null
+                return Event(id = requiredString(ID), name = requiredString(NAME),
+                        desc = requiredString(DESC),
+                        imageUri = imageUri(string(IMAGE_URI) ?: ""),
+                        latitude = if (located) latitude else null,
+                        longitude = if (located) longitude else null,
+                        start = date(long(START), int(START_OFFSET)),
+                        end = date(long(END), int(END_OFFSET)))
+            }
 
+            private fun date(millis: Long?, offset: Int?): DateTime? = millis?.let {
+                val zoneOffset = offset ?: 0
+                DateTime(it, zones.getOrPut(zoneOffset) {
+                    DateTimeZone.forOffsetMillis(zoneOffset)
+                })
+            }
+        }
 
         private fun imageUri(uri: Uri?): String = uri?.toString() ?: ""
         private fun imageUri(uri: String): Uri? =
@@ -233,13 +468,9 @@ object DataUtils {
                 }
 
 
-        private fun date(date: DateTime?): String =
-                if (date != null) ISODateTimeFormat.dateTime().print(date)
-                else ""
-
-        @Throws(ParseException::class)
-        private fun date(date: String): DateTime? =
-                if (date.isNotEmpty()) ISODateTimeFormat.dateTime().parseDateTime(date)
-                else null
+        /**
+         * The offset of the zone of the date from UTC at that date, in millis
+         */
+        private fun offset(date: DateTime?): Int? = date?.let { it.zone.getOffset(it.millis) }
     }
 }
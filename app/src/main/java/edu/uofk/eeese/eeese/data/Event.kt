@@ -15,5 +15,5 @@ import org.joda.time.DateTime
 
 data class Event(val id: String, val name: String,
                  val desc: String, val imageUri: Uri? = null,
-                 val longitude: String? = null, val latitude: String? = null,
+                 val longitude: Double? = null, val latitude: Double? = null,
                  val start: DateTime? = null, val end: DateTime? = null)
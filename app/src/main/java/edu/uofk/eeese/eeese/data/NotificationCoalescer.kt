@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data
+
+import io.reactivex.Scheduler
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Coalesces change notifications, so observers re-query once for a burst of changes instead of
+ * once for every change.
+ *
+ * Notifications requested inside a batch are held until the batch ends, and the rest are held for
+ * [debounceMillis] after the first one. Either way every key is notified once when they are sent,
+ * after [collapse] had the chance to merge the held keys into fewer ones.
+ */
+class NotificationCoalescer<Key> @JvmOverloads constructor(
+        private val debounceMillis: Long,
+        private val scheduler: Scheduler,
+        private val collapse: (Collection<Key>) -> Collection<Key> = { it },
+        private val send: (Key) -> Unit) {
+
+    private val batch = ThreadLocal<Batch<Key>>()
+    private val debounced = LinkedHashSet<Key>()
+
+    private val requestedCount = AtomicLong()
+    private val sentCount = AtomicLong()
+
+    /**
+     * The number of notifications requested so far
+     */
+    val requested: Long get() = requestedCount.get()
+
+    /**
+     * The number of notifications actually sent so far
+     */
+    val sent: Long get() = sentCount.get()
+
+    /**
+     * The number of notifications that were coalesced into others, and so never sent
+     */
+    val suppressed: Long get() = requested - sent
+
+    fun notifyChange(key: Key) {
+        requestedCount.incrementAndGet()
+        val pending = batch.get()
+        if (pending != null) {
+            pending.keys.add(key)
+        } else if (debounceMillis <= 0) {
+            dispatch(key)
+        } else {
+            val first = synchronized(debounced) {
+                val wasEmpty = debounced.isEmpty()
+                debounced.add(key)
+                wasEmpty
+            }
+            if (first) {
+                scheduler.scheduleDirect({ flush() }, debounceMillis, TimeUnit.MILLISECONDS)
+            }
+        }
+    }
+
+    /**
+     * Holds the notifications requested on this thread until [endBatch] is called.
+     * Batches nest, the notifications are held until the outermost one ends
+     */
+    fun beginBatch() {
+        val pending = batch.get() ?: Batch<Key>().also { batch.set(it) }
+        pending.depth++
+    }
+
+    /**
+     * Sends the notifications held since [beginBatch], once the outermost batch ends
+     */
+    fun endBatch() {
+        val pending = batch.get() ?: return
+        if (--pending.depth > 0) {
+            return
+        }
+        batch.remove()
+        collapse(pending.keys).forEach { dispatch(it) }
+    }
+
+    /**
+     * Drops the notifications held since the outermost [beginBatch] without sending them,
+     * for a batch whose changes were rolled back. A rolled back nested batch rolls back the
+     * outer ones too, so their notifications are dropped with it
+     */
+    fun cancelBatch() {
+        batch.remove()
+    }
+
+    /**
+     * Sends the debounced notifications right away
+     */
+    fun flush() {
+        val pending = synchronized(debounced) {
+            val pending = debounced.toList()
+            debounced.clear()
+            pending
+        }
+        collapse(pending).forEach { dispatch(it) }
+    }
+
+    private fun dispatch(key: Key) {
+        sentCount.incrementAndGet()
+        send(key)
+    }
+
+    private class Batch<Key> {
+        val keys = LinkedHashSet<Key>()
+        var depth = 0
+    }
+}
@@ -17,3 +17,8 @@ enum class ProjectCategory {
 data class Project(val id: String, val name: String,
                    val desc: String? = null, val head: String? = null,
                    val category: ProjectCategory, val prerequisites: List<String>)
+
+/**
+ * The part of a [Project] shown in the projects list
+ */
+data class ProjectSummary(val id: String, val name: String, val head: String? = null)
@@ -10,6 +10,7 @@
 
 package edu.uofk.eeese.eeese.data.backend
 
+import com.google.gson.Gson
 import edu.uofk.eeese.eeese.data.Event
 import edu.uofk.eeese.eeese.data.Project
 import edu.uofk.eeese.eeese.data.ProjectCategory
@@ -18,7 +19,7 @@ import edu.uofk.eeese.eeese.data.backend.ServerContract.Projects
 import io.reactivex.Observable
 import io.reactivex.Single
 
-class ApiWrapper(private val api: BackendApi) {
+class ApiWrapper(private val api: BackendApi, private val gson: Gson) {
 
     fun projects(): Single<List<Project>> = api.projects()
             .flatMapObservable({ Observable.fromIterable(it) })
@@ -45,4 +46,19 @@ class ApiWrapper(private val api: BackendApi) {
             .map({ Events.event(it) })
             .toList()
 
+    fun projectChanges(since: String?): Single<ChangesReader<Project>> =
+            api.projectChanges(since)
+                    .map { body ->
+                        ChangesReader(body) {
+                            Projects.project(gson.fromJson(it, Projects.JSON::class.java))
+                        }
+                    }
+
+    fun eventChanges(since: String?): Single<ChangesReader<Event>> =
+            api.eventChanges(since)
+                    .map { body ->
+                        ChangesReader(body) {
+                            Events.event(gson.fromJson(it, Events.JSON::class.java))
+                        }
+                    }
 }
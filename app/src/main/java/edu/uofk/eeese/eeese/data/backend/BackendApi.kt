@@ -13,8 +13,11 @@ package edu.uofk.eeese.eeese.data.backend
 import edu.uofk.eeese.eeese.data.backend.ServerContract.Events
 import edu.uofk.eeese.eeese.data.backend.ServerContract.Projects
 import io.reactivex.Single
+import okhttp3.ResponseBody
 import retrofit2.http.GET
 import retrofit2.http.Path
+import retrofit2.http.Query
+import retrofit2.http.Streaming
 
 interface BackendApi {
     @GET("/projects")
@@ -31,4 +34,20 @@ interface BackendApi {
 
     @GET("/event/{id}")
     fun event(@Path("id") id: String): Single<Events.JSON>
+
+    /**
+     * The projects changed or deleted since the watermark, or all of them if it is null.
+     * The body is not buffered, read it with a [ChangesReader]
+     */
+    @Streaming
+    @GET("/changes/projects")
+    fun projectChanges(@Query("since") since: String?): Single<ResponseBody>
+
+    /**
+     * The events changed or deleted since the watermark, or all of them if it is null.
+     * The body is not buffered, read it with a [ChangesReader]
+     */
+    @Streaming
+    @GET("/changes/events")
+    fun eventChanges(@Query("since") since: String?): Single<ResponseBody>
 }
@@ -62,7 +62,7 @@ public class BackendModule {
     }
 
     @Provides
-    ApiWrapper provideBackendApiWrapper(BackendApi api) {
-        return new ApiWrapper(api);
+    ApiWrapper provideBackendApiWrapper(BackendApi api, Gson jsonParser) {
+        return new ApiWrapper(api, jsonParser);
     }
 }
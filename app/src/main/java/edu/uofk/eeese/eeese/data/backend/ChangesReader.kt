@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.backend
+
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import okhttp3.ResponseBody
+import java.io.Closeable
+
+/**
+ * Reads a changes response straight from the network stream, one record at a time,
+ * so only the record being read is ever held in memory
+ */
+class ChangesReader<out Item>(body: ResponseBody,
+                              private val readItem: (JsonReader) -> Item) : Closeable {
+
+    private val reader = JsonReader(body.charStream())
+
+    /**
+     * Reads the whole response, passing every changed record and deleted id as soon as it is read
+     *
+     * @return the new watermark
+     */
+    fun read(onChanged: (Item) -> Unit, onDeleted: (String) -> Unit): String {
+        var watermark: String? = null
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                ServerContract.Changes.WATERMARK -> watermark = reader.nextString()
+                ServerContract.Changes.CHANGED -> readArray { onChanged(readItem(reader)) }
+                ServerContract.Changes.DELETED -> readArray { onDeleted(reader.nextString()) }
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return watermark ?: throw IllegalArgumentException("the changes have no watermark")
+    }
+
+    private inline fun readArray(readElement: () -> Unit) {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull()
+            return
+        }
+        reader.beginArray()
+        while (reader.hasNext()) {
+            readElement()
+        }
+        reader.endArray()
+    }
+
+    override fun close() = reader.close()
+}
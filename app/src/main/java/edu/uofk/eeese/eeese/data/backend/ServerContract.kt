@@ -22,6 +22,17 @@ import org.joda.time.DateTime
 import java.lang.reflect.Type
 
 object ServerContract {
+
+    /**
+     * The fields of the changes object, which holds the records changed and the ids of the
+     * records deleted since a watermark, along with the new watermark
+     */
+    object Changes {
+        const val WATERMARK = "watermark"
+        const val CHANGED = "changed"
+        const val DELETED = "deleted"
+    }
+
     object Projects {
         val CATEGORY_POWER = "power"
         val CATEGORY_TELECOM = "telecom"
@@ -75,12 +86,16 @@ object ServerContract {
                 if (json.id != null && json.name != null) {
 
                     // Extract location form the server format "long,lat"
-                    var longitude: String? = null
-                    var latitude: String? = null
+                    var longitude: Double? = null
+                    var latitude: Double? = null
                     if (json.location != null && json.location!!.isNotBlank()) {
                         val location = json.location!!.split(",")
-                        longitude = location.component1()
-                        latitude = location.component2()
+                        longitude = location.component1().trim().toDoubleOrNull()
+                        latitude = location.getOrNull(1)?.trim()?.toDoubleOrNull()
+                        if (longitude == null || latitude == null) {
+                            longitude = null
+                            latitude = null
+                        }
                     }
 
                     val imageUri =
@@ -10,22 +10,106 @@
 
 package edu.uofk.eeese.eeese.data.database
 
+import android.content.ContentValues
 import android.content.Context
+import android.database.Cursor
 import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteOpenHelper
+import android.net.Uri
+import android.provider.BaseColumns
+import edu.uofk.eeese.eeese.R
 import edu.uofk.eeese.eeese.data.DataContract
-import edu.uofk.eeese.eeese.di.scopes.ApplicationScope
-import javax.inject.Inject
+import edu.uofk.eeese.eeese.data.DataUtils
+import edu.uofk.eeese.eeese.data.Event
+import org.joda.time.DateTime
+import org.joda.time.DateTimeZone
+import org.joda.time.format.ISODateTimeFormat
 
 
-@ApplicationScope
-class DatabaseHelper @Inject
-constructor(context: Context) : SQLiteOpenHelper(context, DatabaseHelper.DATABASE_NAME, null, DatabaseHelper.DATABASE_VERSION) {
+/**
+ * Opens the app database, or an in-memory one when [name] is null.
+ *
+ * The database is opened in write-ahead logging mode, where readers keep reading the last
+ * committed state while a writer is in a transaction, so syncing does not block the UI queries.
+ * The whole app shares the single [getInstance] helper, and so its pool of connections.
+ */
+class DatabaseHelper(private val context: Context, name: String?) :
+        SQLiteOpenHelper(context, name, null, DatabaseHelper.DATABASE_VERSION) {
+
+    init {
+        setWriteAheadLoggingEnabled(true)
+    }
 
+    /**
+     * The compiled statements of the bulk writes, kept until the helper is closed
+     */
+    val statements = StatementCache { writableDatabase }
 
     companion object {
         private const val DATABASE_NAME = "eeese.db"
-        private const val DATABASE_VERSION = 1
+        private const val DATABASE_VERSION = 10
+        /*
+         * The version events stored their dates as ISO-8601 text in
+         */
+        private const val TEXT_EVENT_DATES_VERSION = 7
+        /*
+         * The last version events stored their location as "long,lat" text in
+         */
+        private const val TEXT_EVENT_LOCATION_VERSION = 8
+        private const val TEXT_LOCATION_COLUMN = "location"
+        /*
+         * The version the full-text indexes were added in
+         */
+        private const val SEARCH_VERSION = 10
+
+        @Volatile private var instance: DatabaseHelper? = null
+
+        /**
+         * The helper of the app database, shared by the content provider and the sync adapter
+         */
+        @JvmStatic
+        fun getInstance(context: Context): DatabaseHelper = instance ?: synchronized(this) {
+            instance ?: DatabaseHelper(context.applicationContext, DATABASE_NAME)
+                    .also { instance = it }
+        }
+
+        /*
+         * Serves ProjectWithCategory, and returns its rows already ordered by name.
+         * It also covers the columns of the project summaries, so the lists never read the rows
+         */
+        const val INDEX_PROJECTS_CATEGORY_NAME = "projects_category_name"
+        /*
+         * Serves ordering and range filters on the start of events
+         */
+        const val INDEX_EVENTS_START = "events_start"
+        /*
+         * Serves the range filters on the end of events, to find the ongoing and past ones
+         */
+        const val INDEX_EVENTS_END = "events_end"
+        /*
+         * Serves the bounding box searches, as a longitude range in each latitude band of the box
+         */
+        const val INDEX_EVENTS_LOCATION = "events_location"
+        /*
+         * Covering indexes for the id to hash scans of the sync, which then never read the rows
+         */
+        const val INDEX_PROJECTS_HASH = "projects_hash"
+        const val INDEX_EVENTS_HASH = "events_hash"
+        /*
+         * Serves the projects requiring a prerequisite, without reading the table
+         */
+        const val INDEX_PROJECT_PREREQUISITES = "project_prerequisites_prerequisite"
+    }
+
+    /**
+     * Sets how many pages the log may grow to before it is checkpointed back into the database
+     */
+    override fun onConfigure(db: SQLiteDatabase) {
+        val pages = context.resources.getInteger(R.integer.wal_autocheckpoint_pages)
+        pragma(db, "wal_autocheckpoint = $pages")
+        // A row replaced on a conflict fires the delete triggers, so it leaves the
+        // full-text indexes and its prerequisites behind
+        db.execSQL("PRAGMA recursive_triggers = ON")
     }
 
     override fun onCreate(db: SQLiteDatabase) {
@@ -39,34 +123,354 @@ constructor(context: Context) : SQLiteOpenHelper(context, DatabaseHelper.DATABAS
                         "${DataContract.ProjectEntry.COLUMN_PROJECT_HEAD} TEXT, " +
                         "${DataContract.ProjectEntry.COLUMN_PROJECT_DESC} TEXT, " +
                         "${DataContract.ProjectEntry.COLUMN_PROJECT_CATEGORY} INTEGER, " +
-                        "${DataContract.ProjectEntry.COLUMN_PROJECT_PREREQS} TEXT" +
+                        "${DataContract.ProjectEntry.COLUMN_PROJECT_HASH} INTEGER NOT NULL DEFAULT 0" +
                         ")"
 
-        val CREATE_EVENTS_TABLE_QUERY =
-                "CREATE TABLE ${DataContract.EventEntry.TABLE_NAME}" +
+        val CREATE_SYNC_STATE_TABLE_QUERY =
+                "CREATE TABLE ${DataContract.SyncStateEntry.TABLE_NAME}" +
                         "( " +
-                        "${DataContract.EventEntry._ID} INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "${DataContract.EventEntry.COLUMN_EVENT_ID} " +
+                        "${DataContract.SyncStateEntry._ID} INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "${DataContract.SyncStateEntry.COLUMN_SYNC_STATE_TABLE} " +
                         "TEXT UNIQUE ON CONFLICT REPLACE, " +
-                        "${DataContract.EventEntry.COLUMN_EVENT_NAME} TEXT NOT NULL, " +
-                        "${DataContract.EventEntry.COLUMN_EVENT_DESC} TEXT, " +
-                        "${DataContract.EventEntry.COLUMN_EVENT_IMAGE_URI} TEXT, " +
-                        "${DataContract.EventEntry.COLUMN_EVENT_LOCATION} TEXT, " +
-                        "${DataContract.EventEntry.COLUMN_EVENT_START_DATE} TEXT, " +
-                        "${DataContract.EventEntry.COLUMN_EVENT_END_DATE} TEXT" +
+                        "${DataContract.SyncStateEntry.COLUMN_SYNC_STATE_WATERMARK} TEXT" +
+                        ")"
+
+        val CREATE_PREREQUISITES_TABLE_QUERY =
+                "CREATE TABLE ${DataContract.PrerequisiteEntry.TABLE_NAME}" +
+                        "( " +
+                        "${DataContract.PrerequisiteEntry._ID} INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "${DataContract.PrerequisiteEntry.COLUMN_PREREQUISITE_NAME} " +
+                        "TEXT NOT NULL UNIQUE" +
                         ")"
 
+        // The primary key keeps the prerequisites of a project together, and in their order
+        val CREATE_PROJECT_PREREQUISITES_TABLE_QUERY =
+                "CREATE TABLE ${DataContract.ProjectPrerequisiteEntry.TABLE_NAME}" +
+                        "( " +
+                        "${DataContract.ProjectPrerequisiteEntry.COLUMN_PROJECT_ID} TEXT NOT NULL, " +
+                        "${DataContract.ProjectPrerequisiteEntry.COLUMN_PREREQUISITE} " +
+                        "INTEGER NOT NULL " +
+                        "REFERENCES ${DataContract.PrerequisiteEntry.TABLE_NAME}" +
+                        "(${DataContract.PrerequisiteEntry._ID}), " +
+                        "${DataContract.ProjectPrerequisiteEntry.COLUMN_POSITION} INTEGER NOT NULL, " +
+                        "PRIMARY KEY (" +
+                        "${DataContract.ProjectPrerequisiteEntry.COLUMN_PROJECT_ID}, " +
+                        "${DataContract.ProjectPrerequisiteEntry.COLUMN_POSITION}" +
+                        ")" +
+                        ")"
+
+        val CREATE_PROJECT_DELETE_TRIGGER_QUERY =
+                "CREATE TRIGGER ${DataContract.ProjectEntry.TABLE_NAME}_delete_prerequisites " +
+                        "AFTER DELETE ON ${DataContract.ProjectEntry.TABLE_NAME} " +
+                        "BEGIN " +
+                        "DELETE FROM ${DataContract.ProjectPrerequisiteEntry.TABLE_NAME} " +
+                        "WHERE ${DataContract.ProjectPrerequisiteEntry.COLUMN_PROJECT_ID} = " +
+                        "old.${DataContract.ProjectEntry.COLUMN_PROJECT_ID}; " +
+                        "END"
+
         db.execSQL(CREATE_PROJECTS_TABLE_QUERY)
-        db.execSQL(CREATE_EVENTS_TABLE_QUERY)
+        createEventsTable(db)
+        db.execSQL(CREATE_SYNC_STATE_TABLE_QUERY)
+        db.execSQL(CREATE_PREREQUISITES_TABLE_QUERY)
+        db.execSQL(CREATE_PROJECT_PREREQUISITES_TABLE_QUERY)
+        db.execSQL(CREATE_PROJECT_DELETE_TRIGGER_QUERY)
+        createIndexes(db)
+        createEventIndexes(db)
+        createSearch(db)
+    }
+
+    /**
+     * Creates the full-text indexes of the projects and events, indexes the existing rows,
+     * and creates the triggers keeping them up to date
+     */
+    private fun createSearch(db: SQLiteDatabase) {
+        val projects = DataContract.ProjectEntry.TABLE_NAME
+        val projectsSearch = DataContract.ProjectSearchEntry.TABLE_NAME
+        val projectColumns = listOf(
+                DataContract.ProjectEntry.COLUMN_PROJECT_NAME,
+                DataContract.ProjectEntry.COLUMN_PROJECT_HEAD,
+                DataContract.ProjectEntry.COLUMN_PROJECT_DESC)
+        db.execSQL("CREATE VIRTUAL TABLE $projectsSearch USING fts4" +
+                "(" +
+                "${DataContract.ProjectSearchEntry.COLUMN_PROJECT_NAME}, " +
+                "${DataContract.ProjectSearchEntry.COLUMN_PROJECT_HEAD}, " +
+                "${DataContract.ProjectSearchEntry.COLUMN_PROJECT_DESC}, " +
+                "tokenize=simple" +
+                ")")
+        createSearchTriggers(db, projects, projectsSearch, projectColumns)
+
+        val events = DataContract.EventEntry.TABLE_NAME
+        val eventsSearch = DataContract.EventSearchEntry.TABLE_NAME
+        val eventColumns = listOf(
+                DataContract.EventEntry.COLUMN_EVENT_NAME,
+                DataContract.EventEntry.COLUMN_EVENT_DESC)
+        db.execSQL("CREATE VIRTUAL TABLE $eventsSearch USING fts4" +
+                "(" +
+                "${DataContract.EventSearchEntry.COLUMN_EVENT_NAME}, " +
+                "${DataContract.EventSearchEntry.COLUMN_EVENT_DESC}, " +
+                "tokenize=simple" +
+                ")")
+        createSearchTriggers(db, events, eventsSearch, eventColumns)
+    }
+
+    /**
+     * Indexes the rows of [table] in [searchTable], which has the same [columns],
+     * and keeps them indexed on every insert, update and delete
+     */
+    private fun createSearchTriggers(db: SQLiteDatabase, table: String, searchTable: String,
+                                     columns: List<String>) {
+        val id = BaseColumns._ID
+        val docid = DataContract.ProjectSearchEntry.COLUMN_DOCID
+        val searchColumns = "$docid, ${columns.joinToString(", ")}"
+        fun folded(row: String) = columns.joinToString(", ") {
+            DataUtils.Search.foldSql("$row$it")
+        }
+        val insert = "INSERT INTO $searchTable ($searchColumns) VALUES (new.$id, ${folded("new.")})"
+        val delete = "DELETE FROM $searchTable WHERE $docid = old.$id"
+
+        db.execSQL("INSERT INTO $searchTable ($searchColumns) " +
+                "SELECT $id, ${folded("")} FROM $table")
+        db.execSQL("CREATE TRIGGER ${searchTable}_insert AFTER INSERT ON $table " +
+                "BEGIN $insert; END")
+        db.execSQL("CREATE TRIGGER ${searchTable}_update " +
+                "AFTER UPDATE OF ${columns.joinToString(", ")} ON $table " +
+                "BEGIN $delete; $insert; END")
+        db.execSQL("CREATE TRIGGER ${searchTable}_delete AFTER DELETE ON $table " +
+                "BEGIN $delete; END")
+    }
+
+    private fun createEventsTable(db: SQLiteDatabase) {
+        db.execSQL("CREATE TABLE ${DataContract.EventEntry.TABLE_NAME}" +
+                "( " +
+                "${DataContract.EventEntry._ID} INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_ID} " +
+                "TEXT UNIQUE ON CONFLICT REPLACE, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_NAME} TEXT NOT NULL, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_DESC} TEXT, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_IMAGE_URI} TEXT, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_LATITUDE} REAL, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_LONGITUDE} REAL, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_LATITUDE_BAND} INTEGER, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_START_DATE} INTEGER, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_START_OFFSET} INTEGER, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_END_DATE} INTEGER, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_END_OFFSET} INTEGER, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_HASH} INTEGER NOT NULL DEFAULT 0" +
+                ")")
+    }
+
+    private fun createIndexes(db: SQLiteDatabase) {
+        db.execSQL("CREATE INDEX $INDEX_PROJECT_PREREQUISITES " +
+                "ON ${DataContract.ProjectPrerequisiteEntry.TABLE_NAME}" +
+                "(" +
+                "${DataContract.ProjectPrerequisiteEntry.COLUMN_PREREQUISITE}, " +
+                "${DataContract.ProjectPrerequisiteEntry.COLUMN_PROJECT_ID}" +
+                ")")
+        db.execSQL("CREATE INDEX $INDEX_PROJECTS_CATEGORY_NAME " +
+                "ON ${DataContract.ProjectEntry.TABLE_NAME}" +
+                "(" +
+                "${DataContract.ProjectEntry.COLUMN_PROJECT_CATEGORY}, " +
+                "${DataContract.ProjectEntry.COLUMN_PROJECT_NAME}, " +
+                "${DataContract.ProjectEntry.COLUMN_PROJECT_ID}, " +
+                "${DataContract.ProjectEntry.COLUMN_PROJECT_HEAD}" +
+                ")")
+        db.execSQL("CREATE INDEX $INDEX_PROJECTS_HASH " +
+                "ON ${DataContract.ProjectEntry.TABLE_NAME}" +
+                "(" +
+                "${DataContract.ProjectEntry.COLUMN_PROJECT_ID}, " +
+                "${DataContract.ProjectEntry.COLUMN_PROJECT_HASH}" +
+                ")")
+    }
+
+    private fun createEventIndexes(db: SQLiteDatabase) {
+        db.execSQL("CREATE INDEX $INDEX_EVENTS_START " +
+                "ON ${DataContract.EventEntry.TABLE_NAME}" +
+                "(" +
+                "${DataContract.EventEntry.COLUMN_EVENT_START_DATE}, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_ID}" +
+                ")")
+        db.execSQL("CREATE INDEX $INDEX_EVENTS_END " +
+                "ON ${DataContract.EventEntry.TABLE_NAME}" +
+                "(" +
+                "${DataContract.EventEntry.COLUMN_EVENT_END_DATE}, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_ID}" +
+                ")")
+        db.execSQL("CREATE INDEX $INDEX_EVENTS_LOCATION " +
+                "ON ${DataContract.EventEntry.TABLE_NAME}" +
+                "(" +
+                "${DataContract.EventEntry.COLUMN_EVENT_LATITUDE_BAND}, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_LONGITUDE}, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_LATITUDE}" +
+                ")")
+        db.execSQL("CREATE INDEX $INDEX_EVENTS_HASH " +
+                "ON ${DataContract.EventEntry.TABLE_NAME}" +
+                "(" +
+                "${DataContract.EventEntry.COLUMN_EVENT_ID}, " +
+                "${DataContract.EventEntry.COLUMN_EVENT_HASH}" +
+                ")")
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        if (oldVersion < TEXT_EVENT_DATES_VERSION) {
+            recreate(db)
+            return
+        }
+        if (oldVersion <= TEXT_EVENT_LOCATION_VERSION) {
+            migrateEvents(db, oldVersion)
+        }
+        if (oldVersion < SEARCH_VERSION) {
+            createSearch(db)
+        }
+    }
+
+    /**
+     * Rebuilds the events table of an older version, keeping the rows so they are not
+     * downloaded again. Every row is read in the old format and written in the current one,
+     * with its hash recomputed
+     */
+    private fun migrateEvents(db: SQLiteDatabase, oldVersion: Int) {
+        val oldTable = "${DataContract.EventEntry.TABLE_NAME}_v$oldVersion"
+        db.execSQL("DROP INDEX IF EXISTS $INDEX_EVENTS_START")
+        db.execSQL("DROP INDEX IF EXISTS $INDEX_EVENTS_END")
+        db.execSQL("DROP INDEX IF EXISTS $INDEX_EVENTS_LOCATION")
+        db.execSQL("DROP INDEX IF EXISTS $INDEX_EVENTS_HASH")
+        db.execSQL("ALTER TABLE ${DataContract.EventEntry.TABLE_NAME} RENAME TO $oldTable")
+        createEventsTable(db)
+
+        // The columns of the old table depend on its version, so they are found by name
+        val cursor = db.query(oldTable, null, null, null, null, null, null)
+        try {
+            val id = cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_ID)
+            val name = cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_NAME)
+            val desc = cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_DESC)
+            val image = cursor.getColumnIndexOrThrow(DataContract.EventEntry.COLUMN_EVENT_IMAGE_URI)
+            val location = cursor.getColumnIndexOrThrow(TEXT_LOCATION_COLUMN)
+            while (cursor.moveToNext()) {
+                val (longitude, latitude) = textLocation(cursor.getString(location))
+                val imageUri = cursor.getString(image)
+                val event = Event(id = cursor.getString(id), name = cursor.getString(name),
+                        desc = cursor.getString(desc) ?: "",
+                        imageUri = if (imageUri == null || imageUri.isEmpty()) null
+                        else Uri.parse(imageUri),
+                        longitude = longitude, latitude = latitude,
+                        start = oldDate(cursor, DataContract.EventEntry.COLUMN_EVENT_START_DATE,
+                                DataContract.EventEntry.COLUMN_EVENT_START_OFFSET, oldVersion),
+                        end = oldDate(cursor, DataContract.EventEntry.COLUMN_EVENT_END_DATE,
+                                DataContract.EventEntry.COLUMN_EVENT_END_OFFSET, oldVersion))
+                db.insertOrThrow(DataContract.EventEntry.TABLE_NAME, null,
+                        DataUtils.Events.values(event))
+            }
+        } finally {
+            cursor.close()
+        }
+
+        db.execSQL("DROP TABLE $oldTable")
+        createEventIndexes(db)
+    }
+
+    /**
+     * A date of an event in the table of an older version, stored as ISO-8601 text in
+     * [dateColumn], or as epoch millis in [dateColumn] with their offset in [offsetColumn]
+     */
+    private fun oldDate(cursor: Cursor, dateColumn: String, offsetColumn: String,
+                        oldVersion: Int): DateTime? {
+        val date = cursor.getColumnIndexOrThrow(dateColumn)
+        return when {
+            cursor.isNull(date) -> null
+            oldVersion == TEXT_EVENT_DATES_VERSION -> isoDate(cursor.getString(date))
+            else -> DateTime(cursor.getLong(date), DateTimeZone.forOffsetMillis(
+                    cursor.getInt(cursor.getColumnIndexOrThrow(offsetColumn))))
+        }
+    }
+
+    /**
+     * The longitude and latitude of a location stored as "long,lat" text
+     */
+    private fun textLocation(location: String?): Pair<Double?, Double?> {
+        val parts = location?.split(",")
+        val longitude = parts?.getOrNull(0)?.trim()?.toDoubleOrNull()
+        val latitude = parts?.getOrNull(1)?.trim()?.toDoubleOrNull()
+        return if (longitude != null && latitude != null) Pair(longitude, latitude)
+        else Pair(null, null)
     }
 
-    override fun onUpgrade(db: SQLiteDatabase, i: Int, i1: Int) {
+    /**
+     * A date stored as ISO-8601 text, in the offset it was stored in
+     */
+    private fun isoDate(date: String?): DateTime? = try {
+        if (date == null || date.isEmpty()) null
+        else ISODateTimeFormat.dateTimeParser().withOffsetParsed().parseDateTime(date)
+    } catch (ignored: IllegalArgumentException) {
+        null
+    }
+
+    private fun recreate(db: SQLiteDatabase) {
         val DROP_PROJECTS_TABLE_QUERY =
                 "DROP TABLE IF EXISTS ${DataContract.ProjectEntry.TABLE_NAME}"
         val DROP_EVENTS_TABLE_QUERY =
                 "DROP TABLE IF EXISTS ${DataContract.EventEntry.TABLE_NAME}"
+        val DROP_SYNC_STATE_TABLE_QUERY =
+                "DROP TABLE IF EXISTS ${DataContract.SyncStateEntry.TABLE_NAME}"
+        val DROP_PREREQUISITES_TABLE_QUERY =
+                "DROP TABLE IF EXISTS ${DataContract.PrerequisiteEntry.TABLE_NAME}"
+        val DROP_PROJECT_PREREQUISITES_TABLE_QUERY =
+                "DROP TABLE IF EXISTS ${DataContract.ProjectPrerequisiteEntry.TABLE_NAME}"
         db.execSQL(DROP_PROJECTS_TABLE_QUERY)
         db.execSQL(DROP_EVENTS_TABLE_QUERY)
+        db.execSQL(DROP_SYNC_STATE_TABLE_QUERY)
+        db.execSQL(DROP_PROJECT_PREREQUISITES_TABLE_QUERY)
+        db.execSQL(DROP_PREREQUISITES_TABLE_QUERY)
+        db.execSQL("DROP TABLE IF EXISTS ${DataContract.ProjectSearchEntry.TABLE_NAME}")
+        db.execSQL("DROP TABLE IF EXISTS ${DataContract.EventSearchEntry.TABLE_NAME}")
         onCreate(db)
     }
+
+    /**
+     * The server watermark of the last successful sync of the table,
+     * or null if the table was never synced with one
+     */
+    fun watermark(table: String): String? {
+        val cursor = readableDatabase.query(DataContract.SyncStateEntry.TABLE_NAME,
+                arrayOf(DataContract.SyncStateEntry.COLUMN_SYNC_STATE_WATERMARK),
+                "${DataContract.SyncStateEntry.COLUMN_SYNC_STATE_TABLE} = ?", arrayOf(table),
+                null, null, null)
+        try {
+            return if (cursor.moveToFirst()) cursor.getString(0) else null
+        } finally {
+            cursor.close()
+        }
+    }
+
+    override fun close() {
+        statements.close()
+        super.close()
+    }
+
+    /**
+     * Copies as much of the log into the database as can be done without waiting on readers,
+     * to be called after large writes instead of leaving it to the next automatic checkpoint
+     */
+    fun checkpoint() {
+        if (writableDatabase.isWriteAheadLoggingEnabled) {
+            pragma(writableDatabase, "wal_checkpoint(PASSIVE)")
+        }
+    }
+
+    private fun pragma(db: SQLiteDatabase, pragma: String) {
+        // Pragmas that return a row can not go through execSQL,
+        // and the query only runs once the cursor is moved
+        val cursor = db.rawQuery("PRAGMA $pragma", null)
+        try {
+            cursor.moveToFirst()
+        } finally {
+            cursor.close()
+        }
+    }
+
+    fun setWatermark(table: String, watermark: String) {
+        val values = ContentValues()
+        values.put(DataContract.SyncStateEntry.COLUMN_SYNC_STATE_TABLE, table)
+        values.put(DataContract.SyncStateEntry.COLUMN_SYNC_STATE_WATERMARK, watermark)
+        writableDatabase.insertOrThrow(DataContract.SyncStateEntry.TABLE_NAME, null, values)
+    }
 }
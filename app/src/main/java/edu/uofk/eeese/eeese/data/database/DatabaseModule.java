@@ -21,7 +21,13 @@ import edu.uofk.eeese.eeese.di.scopes.ApplicationScope;
 public class DatabaseModule {
     @Provides
     @ApplicationScope
-    SQLiteOpenHelper provideDbHelper(Context context) {
-        return new DatabaseHelper(context);
+    DatabaseHelper provideDatabaseHelper(Context context) {
+        return DatabaseHelper.getInstance(context);
+    }
+
+    @Provides
+    @ApplicationScope
+    SQLiteOpenHelper provideDbHelper(DatabaseHelper dbHelper) {
+        return dbHelper;
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.database
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteStatement
+
+/**
+ * Compiled INSERT statements, one for every table and set of columns written to it, so that bulk
+ * writes parse their SQL once instead of once for every row.
+ *
+ * The statements are kept until [close], and their bindings are shared,
+ * so they must only be used inside a transaction, which keeps other writers out.
+ */
+class StatementCache(private val db: () -> SQLiteDatabase) {
+
+    private class Insert(val statement: SQLiteStatement, val columns: Array<String>)
+
+    private val inserts = HashMap<Pair<String, Set<String>>, Insert>()
+    private val statements = HashMap<String, SQLiteStatement>()
+
+    /**
+     * The compiled statement of the SQL, to be bound and executed inside a transaction
+     */
+    fun compiled(sql: String): SQLiteStatement = synchronized(statements) {
+        statements.getOrPut(sql) { db().compileStatement(sql) }
+    }
+
+    /**
+     * Inserts the values like [SQLiteDatabase.insertOrThrow], returning the row id of the new row
+     */
+    fun insert(table: String, values: ContentValues): Long {
+        val insert = insertFor(table, values.keySet())
+        val statement = insert.statement
+        statement.clearBindings()
+        for ((i, column) in insert.columns.withIndex()) {
+            val index = i + 1
+            val value = values.get(column)
+            when (value) {
+                null -> statement.bindNull(index)
+                is String -> statement.bindString(index, value)
+                is Long -> statement.bindLong(index, value)
+                is Int -> statement.bindLong(index, value.toLong())
+                is Short -> statement.bindLong(index, value.toLong())
+                is Byte -> statement.bindLong(index, value.toLong())
+                is Boolean -> statement.bindLong(index, if (value) 1 else 0)
+                is Double -> statement.bindDouble(index, value)
+                is Float -> statement.bindDouble(index, value.toDouble())
+                is ByteArray -> statement.bindBlob(index, value)
+                else -> statement.bindString(index, value.toString())
+            }
+        }
+        return statement.executeInsert()
+    }
+
+    private fun insertFor(table: String, columns: Set<String>): Insert = synchronized(inserts) {
+        inserts[Pair(table, columns)] ?: run {
+            val columnArray = columns.toTypedArray()
+            val sql = if (columnArray.isEmpty()) {
+                "INSERT INTO $table DEFAULT VALUES"
+            } else {
+                "INSERT INTO $table (${columnArray.joinToString()}) " +
+                        "VALUES (${columnArray.joinToString { "?" }})"
+            }
+            val insert = Insert(db().compileStatement(sql), columnArray)
+            // The columns are a view of the values, so the key keeps its own copy of them
+            inserts.put(Pair(table, HashSet(columns)), insert)
+            insert
+        }
+    }
+
+    fun close() {
+        synchronized(inserts) {
+            inserts.values.forEach { it.statement.close() }
+            inserts.clear()
+        }
+        synchronized(statements) {
+            statements.values.forEach { it.close() }
+            statements.clear()
+        }
+    }
+}
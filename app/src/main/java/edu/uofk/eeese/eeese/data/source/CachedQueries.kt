@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.source
+
+import android.content.ContentResolver
+import android.database.ContentObserver
+import android.database.Cursor
+import android.net.Uri
+import com.squareup.sqlbrite.SqlBrite
+import hu.akarnokd.rxjava.interop.RxJavaInterop
+import io.reactivex.Observable
+import io.reactivex.functions.Action
+import rx.schedulers.Schedulers
+
+/**
+ * Live content provider queries whose results are cached in memory, so observing a query
+ * again reads it from the provider only if it changed since.
+ *
+ * The observers of equal queries share one stream, which replays its last result to the ones
+ * joining it, and re-queries once for all of them on a change. The stream stops querying once
+ * all of them left it.
+ *
+ * The cached results under each of the [observed] URIs are invalidated by the change
+ * notifications of the provider, each only by the notifications of its URI or an ancestor.
+ */
+class CachedQueries(resolver: ContentResolver, maxEntries: Int, vararg observed: Uri) {
+
+    /**
+     * A query and the function reading its results, results of equal queries are shared
+     */
+    data class Key(val uri: Uri, val projection: List<String>?, val selection: String?,
+                   val selectionArgs: List<String>?, val orderBy: String?, val read: Any)
+
+    val cache = QueryCache<Key, Any>(maxEntries)
+
+    private val briteResolver = SqlBrite.Builder().build()
+            .wrapContentProvider(resolver, Schedulers.io())
+
+    private val streams = HashMap<Key, Observable<*>>()
+
+    // Notified on the thread sending the notification, before the re-queries of the observers
+    // it triggers are scheduled
+    private val observer = object : ContentObserver(null) {
+        override fun onChange(selfChange: Boolean) = onChange(selfChange, null)
+
+        override fun onChange(selfChange: Boolean, uri: Uri?) {
+            if (uri == null) {
+                cache.clear()
+            } else {
+                cache.invalidate { isUnder(it.uri, uri) }
+            }
+        }
+    }
+
+    init {
+        for (uri in observed) {
+            resolver.registerContentObserver(uri, true, observer)
+        }
+    }
+
+    /**
+     * Observes the results of the query, read with [read], which should be equal for equal
+     * queries for them to be shared, like a function reference. The first result comes from the
+     * cache when it has it, the ones after every change notification are queried again
+     */
+    fun <T : Any> query(uri: Uri, projection: Array<String>?, selection: String?,
+                        selectionArgs: Array<String>?, orderBy: String?,
+                        read: (Cursor) -> T): Observable<T> {
+        val key = Key(uri, projection?.asList(), selection, selectionArgs?.asList(), orderBy,
+                read)
+        synchronized(streams) {
+            @Suppress("UNCHECKED_CAST")
+            val stream = streams[key] as Observable<T>?
+            if (stream != null) {
+                return stream
+            }
+            var shared: Observable<T>? = null
+            val forget = Action {
+                synchronized(streams) {
+                    if (streams[key] === shared) {
+                        streams.remove(key)
+                    }
+                }
+            }
+            val created = results(key, uri, projection, selection, selectionArgs, orderBy, read)
+                    // Disposed once the last observer left, a failed stream is not shared either
+                    .doOnDispose(forget)
+                    .doOnTerminate(forget)
+                    .replay(1)
+                    .refCount()
+            shared = created
+            streams.put(key, created)
+            return created
+        }
+    }
+
+    private fun <T : Any> results(key: Key, uri: Uri, projection: Array<String>?,
+                                  selection: String?, selectionArgs: Array<String>?,
+                                  orderBy: String?, read: (Cursor) -> T): Observable<T> =
+            Observable.defer {
+                var first = true
+                RxJavaInterop.toV2Observable(briteResolver.createQuery(uri, projection,
+                        selection, selectionArgs, orderBy, false))
+                        .map { query ->
+                            @Suppress("UNCHECKED_CAST")
+                            val cached = if (first) cache.get(key) as T? else null
+                            first = false
+                            if (cached != null) {
+                                cached
+                            } else {
+                                val generation = cache.generation
+                                val result = read(query.run()!!)
+                                cache.put(key, result, generation)
+                                result
+                            }
+                        }
+            }
+
+    /**
+     * Whether the notifications of [notified] reach the observers of [uri],
+     * like they would a content observer of it
+     */
+    private fun isUnder(uri: Uri, notified: Uri): Boolean {
+        if (uri.authority != notified.authority) {
+            return false
+        }
+        val segments = uri.pathSegments
+        val notifiedSegments = notified.pathSegments
+        return segments.size >= notifiedSegments.size &&
+                segments.subList(0, notifiedSegments.size) == notifiedSegments
+    }
+}
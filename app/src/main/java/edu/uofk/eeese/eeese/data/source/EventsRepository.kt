@@ -11,50 +11,61 @@
 package edu.uofk.eeese.eeese.data.source
 
 import android.content.Context
-import com.squareup.sqlbrite.SqlBrite
+import edu.uofk.eeese.eeese.R
 import edu.uofk.eeese.eeese.data.DataContract.EventEntry
 import edu.uofk.eeese.eeese.data.DataUtils.Events
 import edu.uofk.eeese.eeese.data.Event
 import edu.uofk.eeese.eeese.data.sync.SyncManager
-import hu.akarnokd.rxjava.interop.RxJavaInterop
 import io.reactivex.Completable
 import io.reactivex.Observable
-import rx.schedulers.Schedulers
 
 class EventsRepository(context: Context,
-                       private val syncManager: SyncManager) : Repository<Event> {
+                       private val syncManager: SyncManager) : PagedRepository<Event, Event> {
 
     private val resolver = context.contentResolver
-    private val sqlBrite = SqlBrite.Builder().build()
-    private val briteResolver = sqlBrite.wrapContentProvider(resolver, Schedulers.io())
+    /**
+     * The queries of the events, whose results are kept until the events change
+     */
+    val queries = CachedQueries(resolver,
+            context.resources.getInteger(R.integer.query_cache_entries),
+            EventEntry.CONTENT_URI, EventEntry.ITEM_CONTENT_URI)
 
-    override fun getOne(spec: Specification): Observable<out Event> {
-        val (selection, selectionArgs) =
-                (spec as ContentProviderSpecification).toSelectionQuery()
-        return RxJavaInterop.toV2Observable(
-                briteResolver.createQuery(EventEntry.CONTENT_URI, null,
-                        selection, selectionArgs, null, false))
-                .map { it.run()!! }
-                .map { Events.event(it) }
-    }
+    override fun getOne(spec: Specification): Observable<out Event> =
+            if (spec is ContentProviderItemSpecification) {
+                queries.query(spec.itemUri(), Events.PROJECTION, null, null, null,
+                        Events::event)
+            } else {
+                val (selection, selectionArgs) =
+                        (spec as ContentProviderSpecification).toSelectionQuery()
+                queries.query(EventEntry.CONTENT_URI, Events.PROJECTION,
+                        selection, selectionArgs, null, Events::event)
+            }
 
     override fun get(spec: Specification): Observable<out List<Event>> {
         val (selection, selectionArgs) =
                 (spec as ContentProviderSpecification).toSelectionQuery()
-        return RxJavaInterop.toV2Observable(
-                briteResolver.createQuery(EventEntry.CONTENT_URI, null,
-                        selection, selectionArgs, null, false))
-                .map { it.run()!! }
-                .map { Events.events(it) }
-
+        // The order and limit of the specification, if it has them, are left to the database
+        val uri = (spec as? ContentProviderPageSpecification)?.limitedUri(EventEntry.CONTENT_URI)
+                ?: EventEntry.CONTENT_URI
+        val orderBy = (spec as? ContentProviderSortedSpecification)?.orderBy()
+        return queries.query(uri, Events.PROJECTION, selection, selectionArgs, orderBy,
+                Events::events)
     }
 
     override fun get(): Observable<out List<Event>> =
-            RxJavaInterop.toV2Observable(
-                    briteResolver.createQuery(EventEntry.CONTENT_URI, null,
-                            null, null, null, false))
-                    .map { it.run()!! }
-                    .map { Events.events(it) }
+            queries.query(EventEntry.CONTENT_URI, Events.PROJECTION, null, null, null,
+                    Events::events)
+
+    override fun getPage(spec: Specification, after: Event?, pageSize: Int):
+            Observable<out List<Event>> =
+            get(KeysetPage(spec as ContentProviderSpecification,
+                    Events.START_ORDER, EventEntry.COLUMN_EVENT_ID,
+                    after?.let { Events.start(it) }, after?.id, pageSize))
+
+    override fun getThrough(spec: Specification, through: Event): Observable<out List<Event>> =
+            get(KeysetThrough(spec as ContentProviderSpecification,
+                    Events.START_ORDER, EventEntry.COLUMN_EVENT_ID,
+                    Events.start(through), through.id))
 
     override fun add(event: Event): Completable = Completable.fromAction {
         resolver.insert(EventEntry.CONTENT_URI, Events.values(event))
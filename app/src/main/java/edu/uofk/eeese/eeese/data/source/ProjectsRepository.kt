@@ -11,53 +11,90 @@
 package edu.uofk.eeese.eeese.data.source
 
 import android.content.Context
-import com.squareup.sqlbrite.SqlBrite
+import android.database.Cursor
+import edu.uofk.eeese.eeese.R
 import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry
 import edu.uofk.eeese.eeese.data.DataUtils.Projects
 import edu.uofk.eeese.eeese.data.Project
+import edu.uofk.eeese.eeese.data.ProjectSummary
 import edu.uofk.eeese.eeese.data.sync.SyncManager
-import hu.akarnokd.rxjava.interop.RxJavaInterop
 import io.reactivex.Completable
 import io.reactivex.Observable
 import io.reactivex.schedulers.Schedulers as V2Schedulers
-import rx.schedulers.Schedulers as V1Schedulers
 
 class ProjectsRepository(context: Context,
                          private val syncManager: SyncManager) :
-        Repository<Project> {
+        SummaryRepository<Project, ProjectSummary>, PagedRepository<Project, ProjectSummary> {
 
     companion object {
         private val TAG = ProjectsRepository::class.java.name
     }
 
     private val resolver = context.contentResolver
-    private val sqlBrite = SqlBrite.Builder().build()
-    private val briteResolver = sqlBrite.wrapContentProvider(resolver, V1Schedulers.io())
+    /**
+     * The queries of the projects, whose results are kept until the projects change
+     */
+    val queries = CachedQueries(resolver,
+            context.resources.getInteger(R.integer.query_cache_entries),
+            ProjectEntry.CONTENT_URI, ProjectEntry.ITEM_CONTENT_URI)
 
-    override fun getOne(spec: Specification): Observable<Project> {
-        val (selection, selectionArgs) =
-                (spec as ContentProviderSpecification).toSelectionQuery()
-        return RxJavaInterop.toV2Observable(
-                briteResolver.createQuery(ProjectEntry.CONTENT_URI, null,
-                        selection, selectionArgs, null, false))
-                .map { it.run()!! }
-                .map { Projects.project(it) }
-    }
+    override fun getOne(spec: Specification): Observable<Project> =
+            if (spec is ContentProviderItemSpecification) {
+                queries.query(spec.itemUri(), Projects.PROJECTION, null, null, null,
+                        Projects::project)
+            } else {
+                val (selection, selectionArgs) =
+                        (spec as ContentProviderSpecification).toSelectionQuery()
+                queries.query(ProjectEntry.CONTENT_URI, Projects.PROJECTION,
+                        selection, selectionArgs, null, Projects::project)
+            }
+
+    override fun get(spec: Specification): Observable<List<Project>> =
+            query(spec, Projects.PROJECTION, Projects::projects)
 
-    override fun get(spec: Specification): Observable<List<Project>> {
+    override fun getSummaries(spec: Specification): Observable<List<ProjectSummary>> =
+            query(spec, Projects.SUMMARY_PROJECTION, Projects::summaries)
+
+    /**
+     * Queries the projects of the specification, in its order and limit if it has them,
+     * or by name
+     */
+    private fun <T : Any> query(spec: Specification, projection: Array<String>,
+                                read: (Cursor) -> T): Observable<T> {
         val (selection, selectionArgs) =
                 (spec as ContentProviderSpecification).toSelectionQuery()
-        return RxJavaInterop.toV2Observable(
-                briteResolver.createQuery(ProjectEntry.CONTENT_URI, null,
-                        selection, selectionArgs, null, false))
-                .map { it.run()!! }
-                .map { Projects.projects(it) }
+        val uri = (spec as? ContentProviderPageSpecification)
+                ?.limitedUri(ProjectEntry.CONTENT_URI)
+                ?: ProjectEntry.CONTENT_URI
+        val orderBy = (spec as? ContentProviderSortedSpecification)?.orderBy()
+                ?: ProjectEntry.COLUMN_PROJECT_NAME
+        return queries.query(uri, projection, selection, selectionArgs, orderBy, read)
     }
 
-    override fun get(): Observable<List<Project>> = RxJavaInterop.toV2Observable(
-            briteResolver.createQuery(ProjectEntry.CONTENT_URI, null, null, null, null, false))
-            .map { it.run()!! }
-            .map { Projects.projects(it) }
+    override fun getPage(spec: Specification, after: ProjectSummary?, pageSize: Int):
+            Observable<List<ProjectSummary>> =
+            if (after == null && spec is ProjectWithCategory) {
+                // The first pages of all the categories are shown together, so they share a query
+                query(FirstProjectsOfEachCategory(pageSize), Projects.CATEGORY_SUMMARY_PROJECTION,
+                        Projects::summariesByCategory)
+                        .map { it[spec.category] ?: emptyList() }
+            } else {
+                query(KeysetPage(spec as ContentProviderSpecification,
+                        ProjectEntry.COLUMN_PROJECT_NAME, ProjectEntry.COLUMN_PROJECT_ID,
+                        after?.name, after?.id, pageSize),
+                        Projects.SUMMARY_PROJECTION, Projects::summaries)
+            }
+
+    override fun getThrough(spec: Specification, through: ProjectSummary):
+            Observable<List<ProjectSummary>> =
+            query(KeysetThrough(spec as ContentProviderSpecification,
+                    ProjectEntry.COLUMN_PROJECT_NAME, ProjectEntry.COLUMN_PROJECT_ID,
+                    through.name, through.id),
+                    Projects.SUMMARY_PROJECTION, Projects::summaries)
+
+    override fun get(): Observable<List<Project>> =
+            queries.query(ProjectEntry.CONTENT_URI, Projects.PROJECTION, null, null, null,
+                    Projects::projects)
 
     override fun add(event: Project): Completable = Completable.fromAction {
         resolver.insert(ProjectEntry.CONTENT_URI, Projects.values(event))
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.source
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A least recently used cache of query results, at most [maxEntries] of them.
+ *
+ * Results are invalidated by the keys they were queried with, and a result that was being
+ * queried while an invalidation happened is not stored, as it may have been read before the
+ * change. Take the [generation] before querying and put the result with it.
+ */
+class QueryCache<Key, Value>(private val maxEntries: Int) {
+
+    private val generationCount = AtomicLong()
+    private val hitCount = AtomicLong()
+    private val missCount = AtomicLong()
+    private val evictionCount = AtomicLong()
+
+    private val entries = object : LinkedHashMap<Key, Value>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Value>?): Boolean {
+            val evict = size > maxEntries
+            if (evict) {
+                evictionCount.incrementAndGet()
+            }
+            return evict
+        }
+    }
+
+    /**
+     * Changes whenever results are invalidated
+     */
+    val generation: Long get() = generationCount.get()
+
+    /**
+     * The number of reads served from the cache so far
+     */
+    val hits: Long get() = hitCount.get()
+
+    /**
+     * The number of reads that had to be queried so far
+     */
+    val misses: Long get() = missCount.get()
+
+    /**
+     * The number of results dropped so far to keep the cache within its size
+     */
+    val evictions: Long get() = evictionCount.get()
+
+    val size: Int get() = synchronized(entries) { entries.size }
+
+    fun get(key: Key): Value? {
+        val value = synchronized(entries) { entries[key] }
+        if (value != null) hitCount.incrementAndGet() else missCount.incrementAndGet()
+        return value
+    }
+
+    /**
+     * Stores the result of the key, unless results were invalidated since [generation]
+     */
+    fun put(key: Key, value: Value, generation: Long) {
+        synchronized(entries) {
+            if (generation == generationCount.get()) {
+                entries.put(key, value)
+            }
+        }
+    }
+
+    /**
+     * Drops the results of the keys matching [stale]
+     */
+    fun invalidate(stale: (Key) -> Boolean) {
+        synchronized(entries) {
+            generationCount.incrementAndGet()
+            val iterator = entries.keys.iterator()
+            while (iterator.hasNext()) {
+                if (stale(iterator.next())) {
+                    iterator.remove()
+                }
+            }
+        }
+    }
+
+    fun clear() = invalidate { true }
+}
@@ -27,3 +27,27 @@ interface Repository<ItemType> {
 
     fun sync(): Completable
 }
+
+/**
+ * A repository that can also list summaries of its items,
+ * which only read the few columns a list needs instead of whole items
+ */
+interface SummaryRepository<ItemType, SummaryType> : Repository<ItemType> {
+
+    fun getSummaries(spec: Specification): Observable<out List<SummaryType>>
+}
+
+/**
+ * A repository that can list its items a page at a time, every page starting after the last item
+ * of the one before it. Observing a page re-queries it when the items change.
+ */
+interface PagedRepository<ItemType, PageItemType> : Repository<ItemType> {
+
+    fun getPage(spec: Specification, after: PageItemType?, pageSize: Int):
+            Observable<out List<PageItemType>>
+
+    /**
+     * Every item of the pages up to and including [through], re-queried when the items change
+     */
+    fun getThrough(spec: Specification, through: PageItemType): Observable<out List<PageItemType>>
+}
@@ -10,8 +10,13 @@
 
 package edu.uofk.eeese.eeese.data.source
 
+import android.database.DatabaseUtils
+import android.net.Uri
+import android.provider.BaseColumns
 import edu.uofk.eeese.eeese.data.DataContract
+import edu.uofk.eeese.eeese.data.DataContract.PrerequisiteEntry
 import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry
+import edu.uofk.eeese.eeese.data.DataContract.ProjectPrerequisiteEntry
 import edu.uofk.eeese.eeese.data.DataUtils
 import edu.uofk.eeese.eeese.data.ProjectCategory
 
@@ -25,14 +30,489 @@ interface ContentProviderSpecification : Specification {
     fun toSelectionQuery(): ContentProviderSelection
 }
 
+/**
+ * A specification of a single row that has its own content URI, observing it is only
+ * notified of changes to that row rather than to its whole table
+ */
+interface ContentProviderItemSpecification : ContentProviderSpecification {
+    fun itemUri(): Uri
+}
+
+/**
+ * A specification of rows in the order of [orderBy], an SQL ORDER BY clause without the keywords
+ */
+interface ContentProviderSortedSpecification : ContentProviderSpecification {
+    fun orderBy(): String
+}
+
+/**
+ * A specification of a page of rows, in the order of [orderBy], at most [limit] rows long,
+ * after skipping the first [offset] rows
+ */
+interface ContentProviderPageSpecification : ContentProviderSortedSpecification {
+    fun limit(): Int
+    fun offset(): Int = 0
+
+    /**
+     * The collection URI to query for the page, which carries its limit and offset
+     */
+    fun limitedUri(collection: Uri): Uri {
+        val uri = collection.buildUpon()
+                .appendQueryParameter(DataContract.QUERY_PARAMETER_LIMIT, limit().toString())
+        if (offset() > 0) {
+            uri.appendQueryParameter(DataContract.QUERY_PARAMETER_OFFSET, offset().toString())
+        }
+        return uri.build()
+    }
+}
+
+/**
+ * Every row
+ */
+object AnyRow : ContentProviderSpecification {
+    override fun toSelectionQuery() = ContentProviderSelection(null, null)
+}
+
+/**
+ * The page of rows of [spec] that comes after the row whose [orderColumn] and [idColumn] are
+ * [afterOrder] and [afterId], ordered by [orderColumn] then [idColumn].
+ * The first page is the one after nothing.
+ * The [orderColumn] may be an expression, as long as it is never null, since a null key is
+ * neither before nor after any row.
+ *
+ * Seeking past the last row of the previous page keeps every page as cheap as the first one
+ * when there is an index on both columns, unlike skipping the rows before it with an OFFSET.
+ */
+class KeysetPage(private val spec: ContentProviderSpecification,
+                 private val orderColumn: String,
+                 private val idColumn: String,
+                 private val afterOrder: String?,
+                 private val afterId: String?,
+                 private val size: Int) : ContentProviderPageSpecification {
+
+    override fun toSelectionQuery(): ContentProviderSelection {
+        val (selection, selectionArgs) = spec.toSelectionQuery()
+        if (afterOrder == null || afterId == null) {
+            return ContentProviderSelection(selection, selectionArgs)
+        }
+        // The >= lets the index seek to the previous page's last row,
+        // the rest skips that row and the rows before it with the same order value
+        return keyset(selection, selectionArgs,
+                "$orderColumn >= ? AND ($orderColumn > ? OR $idColumn > ?)",
+                arrayOf(afterOrder, afterOrder, afterId))
+    }
+
+    override fun orderBy() = "$orderColumn, $idColumn"
+
+    override fun limit() = size
+}
+
+/**
+ * The rows of [spec] up to and including the row whose [orderColumn] and [idColumn] are
+ * [throughOrder] and [throughId], in the order of [KeysetPage]. These are the rows of every
+ * page loaded up to that row, so they can all be observed with one query
+ */
+class KeysetThrough(private val spec: ContentProviderSpecification,
+                    private val orderColumn: String,
+                    private val idColumn: String,
+                    private val throughOrder: String,
+                    private val throughId: String) : ContentProviderSortedSpecification {
+
+    override fun toSelectionQuery(): ContentProviderSelection {
+        val (selection, selectionArgs) = spec.toSelectionQuery()
+        return keyset(selection, selectionArgs,
+                "$orderColumn <= ? AND ($orderColumn < ? OR $idColumn <= ?)",
+                arrayOf(throughOrder, throughOrder, throughId))
+    }
+
+    override fun orderBy() = "$orderColumn, $idColumn"
+}
+
+private fun keyset(selection: String?, selectionArgs: Array<String>?,
+                   seek: String, seekArgs: Array<String>) =
+        if (selection == null) {
+            ContentProviderSelection(seek, seekArgs)
+        } else {
+            ContentProviderSelection("($selection) AND $seek",
+                    (selectionArgs ?: emptyArray()) + seekArgs)
+        }
+
 open class RowWithValue(private val row: String, private val value: String) :
         ContentProviderSpecification {
     override fun toSelectionQuery() = ContentProviderSelection("$row = ?", arrayOf(value))
 }
 
-class ProjectWithId(id: String) : RowWithValue(ProjectEntry.COLUMN_PROJECT_ID, id)
-class ProjectWithCategory(category: ProjectCategory) :
+/**
+ * The rows whose [row] is one of the [values], none if there are no values
+ */
+open class RowWithValueIn(private val row: String, private val values: Collection<String>) :
+        ContentProviderSpecification {
+    override fun toSelectionQuery() =
+            if (values.isEmpty()) ContentProviderSelection("0", null)
+            else ContentProviderSelection("$row IN (${values.joinToString(", ") { "?" }})",
+                    values.toTypedArray())
+}
+
+/**
+ * The rows whose [row] is between [from] and [to], a missing bound leaves that side open
+ */
+open class RowInRange @JvmOverloads constructor(private val row: String,
+                                                private val from: String?,
+                                                private val to: String?,
+                                                private val fromInclusive: Boolean = true,
+                                                private val toInclusive: Boolean = false) :
+        ContentProviderSpecification {
+    override fun toSelectionQuery(): ContentProviderSelection {
+        val bounds = listOfNotNull(
+                from?.let { Pair(if (fromInclusive) "$row >= ?" else "$row > ?", it) },
+                to?.let { Pair(if (toInclusive) "$row <= ?" else "$row < ?", it) })
+        return if (bounds.isEmpty()) ContentProviderSelection("$row IS NOT NULL", null)
+        else ContentProviderSelection(bounds.joinToString(" AND ") { it.first },
+                bounds.map { it.second }.toTypedArray())
+    }
+}
+
+/**
+ * The rows that have no [row]
+ */
+open class RowWithNull(private val row: String) : ContentProviderSpecification {
+    override fun toSelectionQuery() = ContentProviderSelection("$row IS NULL", null)
+}
+
+/**
+ * The rows matching all of the [specs], their selections joined with AND
+ * and their arguments in their order. Every row matches when there are none
+ */
+open class AllOf(private vararg val specs: ContentProviderSpecification) :
+        ContentProviderSpecification {
+    override fun toSelectionQuery(): ContentProviderSelection {
+        val selections = specs.map { it.toSelectionQuery() }.filter { it.selection != null }
+        return join(selections, " AND ")
+    }
+}
+
+/**
+ * The rows matching any of the [specs], their selections joined with OR
+ * and their arguments in their order. No row matches when there are none
+ */
+open class AnyOf(private vararg val specs: ContentProviderSpecification) :
+        ContentProviderSpecification {
+    override fun toSelectionQuery(): ContentProviderSelection {
+        val selections = specs.map { it.toSelectionQuery() }
+        return when {
+            selections.isEmpty() -> ContentProviderSelection("0", null)
+            // A spec without a selection matches every row, and so does the whole OR
+            selections.any { it.selection == null } -> ContentProviderSelection(null, null)
+            else -> join(selections, " OR ")
+        }
+    }
+}
+
+/**
+ * The rows not matching [spec]
+ */
+class Not(private val spec: ContentProviderSpecification) : ContentProviderSpecification {
+    override fun toSelectionQuery(): ContentProviderSelection {
+        val (selection, selectionArgs) = spec.toSelectionQuery()
+        return if (selection == null) ContentProviderSelection("0", null)
+        else ContentProviderSelection("NOT ($selection)", selectionArgs)
+    }
+}
+
+private fun join(selections: List<ContentProviderSelection>, operator: String) = when {
+    selections.isEmpty() -> ContentProviderSelection(null, null)
+    selections.size == 1 -> selections.single()
+    else -> {
+        val selectionArgs = selections.flatMap { it.selectionArgs?.asList() ?: emptyList() }
+        ContentProviderSelection(
+                selections.joinToString(operator) { "(${it.selection})" },
+                if (selectionArgs.isEmpty()) null else selectionArgs.toTypedArray())
+    }
+}
+
+infix fun ContentProviderSpecification.and(other: ContentProviderSpecification) =
+        AllOf(this, other)
+
+infix fun ContentProviderSpecification.or(other: ContentProviderSpecification) =
+        AnyOf(this, other)
+
+operator fun ContentProviderSpecification.not() = Not(this)
+
+/**
+ * A column to order rows by
+ */
+data class Order @JvmOverloads constructor(val column: String, val descending: Boolean = false) {
+    override fun toString() = if (descending) "$column DESC" else column
+}
+
+/**
+ * The rows of [spec], ordered by each of the [orders] in turn
+ */
+class Sorted(private val spec: ContentProviderSpecification, private vararg val orders: Order) :
+        ContentProviderSortedSpecification, ContentProviderSpecification by spec {
+    override fun orderBy() = orders.joinToString(", ")
+}
+
+/**
+ * At most [limit] rows of [spec], after skipping the first [offset] of them.
+ * Prefer a [KeysetPage] for paging through many rows, as the skipped rows are still read
+ */
+class OffsetPage @JvmOverloads constructor(private val spec: ContentProviderSortedSpecification,
+                                           private val limit: Int,
+                                           private val offset: Int = 0) :
+        ContentProviderPageSpecification, ContentProviderSortedSpecification by spec {
+    override fun limit() = limit
+    override fun offset() = offset
+}
+
+fun ContentProviderSpecification.sortedBy(vararg orders: Order) = Sorted(this, *orders)
+
+@JvmOverloads
+fun ContentProviderSortedSpecification.page(limit: Int, offset: Int = 0) =
+        OffsetPage(this, limit, offset)
+
+class ProjectWithId(private val id: String) :
+        RowWithValue(ProjectEntry.COLUMN_PROJECT_ID, id), ContentProviderItemSpecification {
+    override fun itemUri(): Uri = ProjectEntry.itemUri(id)
+}
+
+class ProjectWithCategory(val category: ProjectCategory) :
         RowWithValue(ProjectEntry.COLUMN_PROJECT_CATEGORY,
                 DataUtils.Projects.category(category).toString())
 
-class EventWithId(id: String) : RowWithValue(DataContract.EventEntry.COLUMN_EVENT_ID, id)
+/**
+ * The first [size] projects by name of every category, ordered by category then name.
+ * Each category's projects are the first page of [ProjectWithCategory] with that category,
+ * read with one query instead of one per category
+ */
+class FirstProjectsOfEachCategory(private val size: Int) : ContentProviderSortedSpecification {
+    override fun toSelectionQuery(): ContentProviderSelection {
+        val categories = ProjectCategory.values()
+        // Every category's page is read from the category index, already in order
+        val pages = categories.joinToString(" UNION ALL ") {
+            "SELECT ${ProjectEntry._ID} FROM (" +
+                    "SELECT ${ProjectEntry._ID} FROM ${ProjectEntry.TABLE_NAME} " +
+                    "WHERE ${ProjectEntry.COLUMN_PROJECT_CATEGORY} = ? " +
+                    "ORDER BY ${ProjectEntry.COLUMN_PROJECT_NAME}, ${ProjectEntry.COLUMN_PROJECT_ID} " +
+                    "LIMIT $size)"
+        }
+        return ContentProviderSelection("${ProjectEntry._ID} IN ($pages)",
+                Array(categories.size) { DataUtils.Projects.category(categories[it]).toString() })
+    }
+
+    override fun orderBy() = "${ProjectEntry.COLUMN_PROJECT_CATEGORY}, " +
+            "${ProjectEntry.COLUMN_PROJECT_NAME}, ${ProjectEntry.COLUMN_PROJECT_ID}"
+}
+
+/**
+ * The projects that have [prerequisite] among their prerequisites
+ */
+class ProjectRequiring(private val prerequisite: String) : ContentProviderSpecification {
+    override fun toSelectionQuery() = ContentProviderSelection(
+            "${ProjectEntry.COLUMN_PROJECT_ID} IN (" +
+                    "SELECT ${ProjectPrerequisiteEntry.TABLE_NAME}.${ProjectPrerequisiteEntry.COLUMN_PROJECT_ID} " +
+                    "FROM ${ProjectPrerequisiteEntry.TABLE_NAME} " +
+                    "JOIN ${PrerequisiteEntry.TABLE_NAME} " +
+                    "ON ${PrerequisiteEntry.TABLE_NAME}.${PrerequisiteEntry._ID} = " +
+                    "${ProjectPrerequisiteEntry.TABLE_NAME}.${ProjectPrerequisiteEntry.COLUMN_PREREQUISITE} " +
+                    "WHERE ${PrerequisiteEntry.TABLE_NAME}.${PrerequisiteEntry.COLUMN_PREREQUISITE_NAME} = ?)",
+            arrayOf(prerequisite))
+}
+
+class EventWithId(private val id: String) :
+        RowWithValue(DataContract.EventEntry.COLUMN_EVENT_ID, id),
+        ContentProviderItemSpecification {
+    override fun itemUri(): Uri = DataContract.EventEntry.itemUri(id)
+}
+
+/**
+ * The events that start after [now], in epoch millis
+ */
+class UpcomingEvents @JvmOverloads constructor(now: Long = System.currentTimeMillis()) :
+        RowInRange(DataContract.EventEntry.COLUMN_EVENT_START_DATE, now.toString(), null,
+                fromInclusive = false)
+
+/**
+ * The events that started by [now], in epoch millis, and have not ended yet
+ */
+class OngoingEvents @JvmOverloads constructor(now: Long = System.currentTimeMillis()) : AllOf(
+        RowInRange(DataContract.EventEntry.COLUMN_EVENT_END_DATE, now.toString(), null,
+                fromInclusive = false),
+        RowInRange(DataContract.EventEntry.COLUMN_EVENT_START_DATE, null, now.toString(),
+                toInclusive = true))
+
+/**
+ * The events that ended by [now], in epoch millis, or started by it when they have no end
+ */
+class PastEvents @JvmOverloads constructor(now: Long = System.currentTimeMillis()) : AnyOf(
+        RowInRange(DataContract.EventEntry.COLUMN_EVENT_END_DATE, null, now.toString(),
+                toInclusive = true),
+        AllOf(RowWithNull(DataContract.EventEntry.COLUMN_EVENT_END_DATE),
+                RowInRange(DataContract.EventEntry.COLUMN_EVENT_START_DATE, null, now.toString(),
+                        toInclusive = true)))
+
+/**
+ * The events located in the box between the [south] and [north] latitudes and the [west] and
+ * [east] longitudes, in degrees. A box whose [west] is east of its [east] crosses the
+ * antimeridian, and is searched as the two boxes on either side of it.
+ *
+ * The box is searched as a longitude range in each of the latitude bands it spans, so only
+ * the index entries of the events near the box are read
+ */
+open class EventsInBox(private val south: Double, private val west: Double,
+                       private val north: Double, private val east: Double) :
+        ContentProviderSpecification {
+
+    override fun toSelectionQuery(): ContentProviderSelection =
+            if (west <= east) {
+                ContentProviderSelection(box(), arrayOf(west.toString(), east.toString(),
+                        south.toString(), north.toString()))
+            } else {
+                // Each side is a box of its own, so each can still seek in the location index
+                ContentProviderSelection("(${box()}) OR (${box()})",
+                        arrayOf(west.toString(), "180", south.toString(), north.toString(),
+                                "-180", east.toString(), south.toString(), north.toString()))
+            }
+
+    private fun box(): String {
+        val bands = (DataUtils.Events.latitudeBand(south)..DataUtils.Events.latitudeBand(north))
+                .joinToString(", ")
+        return "${DataContract.EventEntry.COLUMN_EVENT_LATITUDE_BAND} IN ($bands) " +
+                "AND ${DataContract.EventEntry.COLUMN_EVENT_LONGITUDE} BETWEEN ? AND ? " +
+                "AND ${DataContract.EventEntry.COLUMN_EVENT_LATITUDE} BETWEEN ? AND ?"
+    }
+}
+
+/**
+ * The [count] events nearest to the [latitude] and [longitude], in degrees, within
+ * [radiusKm] of it, nearest first.
+ *
+ * The events are searched in the box around the radius, wrapped around the antimeridian when
+ * it crosses it, and then kept and ordered by their equirectangular distance. That is within a
+ * fraction of a percent of the great-circle distance at this range, and needs no trigonometry
+ * in SQL
+ */
+class NearestEvents @JvmOverloads constructor(private val latitude: Double,
+                                              private val longitude: Double,
+                                              private val count: Int,
+                                              private val radiusKm: Double = DEFAULT_RADIUS_KM) :
+        EventsInBox(Math.max(-90.0, latitude - degrees(radiusKm)),
+                west(longitude, degrees(radiusKm, latitude)),
+                Math.min(90.0, latitude + degrees(radiusKm)),
+                east(longitude, degrees(radiusKm, latitude))),
+        ContentProviderPageSpecification {
+
+    companion object {
+        const val DEFAULT_RADIUS_KM = 100.0
+        private const val KM_PER_DEGREE = 111.32
+
+        private fun degrees(km: Double) = km / KM_PER_DEGREE
+        private fun degrees(km: Double, latitude: Double) =
+                km / (KM_PER_DEGREE * Math.cos(Math.toRadians(latitude)))
+
+        // The edges of the longitude range, wrapped into [-180, 180]
+        private fun west(longitude: Double, degrees: Double) =
+                if (degrees >= 180) -180.0
+                else (longitude - degrees).let { if (it < -180) it + 360 else it }
+
+        private fun east(longitude: Double, degrees: Double) =
+                if (degrees >= 180) 180.0
+                else (longitude + degrees).let { if (it > 180) it - 360 else it }
+    }
+
+    override fun toSelectionQuery(): ContentProviderSelection {
+        val (selection, selectionArgs) = super.toSelectionQuery()
+        // The corners of the box are farther than the radius.
+        // The bound is inlined, a bound argument would be compared as text
+        val radius = degrees(radiusKm)
+        return ContentProviderSelection("($selection) AND ${distance()} <= ${radius * radius}",
+                selectionArgs)
+    }
+
+    override fun orderBy() = distance()
+
+    /**
+     * The squared equirectangular distance of an event, in degrees of latitude
+     */
+    private fun distance(): String {
+        // A degree of longitude shrinks with the cosine of the latitude,
+        // and the events across the antimeridian are the other way around the globe
+        val scale = Math.cos(Math.toRadians(latitude))
+        val dLatitude = "(${DataContract.EventEntry.COLUMN_EVENT_LATITUDE} - $latitude)"
+        val offset = "abs(${DataContract.EventEntry.COLUMN_EVENT_LONGITUDE} - $longitude)"
+        val dLongitude = "min($offset, 360 - $offset) * $scale"
+        return "$dLatitude * $dLatitude + $dLongitude * $dLongitude"
+    }
+
+    override fun limit() = count
+}
+
+/**
+ * The rows of [table] matching every term of [query] as a word prefix, through the full-text
+ * index [searchTable] of the [columns] of the rows, at most [limit] of them.
+ *
+ * The rows are ranked by the first of the [columns] that matches the whole query,
+ * then by their [orderColumn]
+ */
+open class SearchSpecification(private val table: String,
+                               private val searchTable: String,
+                               private val columns: List<String>,
+                               private val orderColumn: String,
+                               query: String,
+                               private val limit: Int) : ContentProviderPageSpecification {
+
+    companion object {
+        const val DEFAULT_LIMIT = 50
+    }
+
+    private val terms = DataUtils.Search.terms(query)
+
+    override fun toSelectionQuery(): ContentProviderSelection =
+            if (terms.isEmpty()) {
+                ContentProviderSelection("0", null)
+            } else {
+                ContentProviderSelection("$table.${BaseColumns._ID} IN ${matching()}",
+                        arrayOf(DataUtils.Search.match(terms)))
+            }
+
+    override fun orderBy(): String {
+        if (terms.isEmpty()) {
+            return orderColumn
+        }
+        // Only the queries of the whole rows can be bound, so the ones of the columns are quoted
+        val ranks = columns.dropLast(1).withIndex().joinToString(" ") { (rank, column) ->
+            val match = DatabaseUtils.sqlEscapeString(DataUtils.Search.match(terms, column))
+            "WHEN $table.${BaseColumns._ID} IN ${matching(match)} THEN $rank"
+        }
+        return if (ranks.isEmpty()) orderColumn
+        else "CASE $ranks ELSE ${columns.size - 1} END, $orderColumn"
+    }
+
+    override fun limit() = limit
+
+    private fun matching(match: String = "?") =
+            "(SELECT docid FROM $searchTable WHERE $searchTable MATCH $match)"
+}
+
+/**
+ * Searches the name, head and description of the projects
+ */
+class ProjectSearch @JvmOverloads constructor(query: String,
+                                              limit: Int = SearchSpecification.DEFAULT_LIMIT) :
+        SearchSpecification(ProjectEntry.TABLE_NAME,
+                DataContract.ProjectSearchEntry.TABLE_NAME,
+                listOf(DataContract.ProjectSearchEntry.COLUMN_PROJECT_NAME,
+                        DataContract.ProjectSearchEntry.COLUMN_PROJECT_HEAD,
+                        DataContract.ProjectSearchEntry.COLUMN_PROJECT_DESC),
+                ProjectEntry.COLUMN_PROJECT_NAME, query, limit)
+
+/**
+ * Searches the name and description of the events
+ */
+class EventSearch @JvmOverloads constructor(query: String,
+                                            limit: Int = SearchSpecification.DEFAULT_LIMIT) :
+        SearchSpecification(DataContract.EventEntry.TABLE_NAME,
+                DataContract.EventSearchEntry.TABLE_NAME,
+                listOf(DataContract.EventSearchEntry.COLUMN_EVENT_NAME,
+                        DataContract.EventSearchEntry.COLUMN_EVENT_DESC),
+                DataContract.EventEntry.COLUMN_EVENT_START_DATE, query, limit)
@@ -13,22 +13,28 @@ package edu.uofk.eeese.eeese.data.sync
 import android.accounts.Account
 import android.annotation.SuppressLint
 import android.content.*
+import android.database.Cursor
 import android.net.Uri
 import android.os.Bundle
+import android.os.SystemClock
 import android.util.Log
+import edu.uofk.eeese.eeese.data.DataContract
 import edu.uofk.eeese.eeese.data.DataContract.EventEntry
 import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry
 import edu.uofk.eeese.eeese.data.DataUtils.Events
+import edu.uofk.eeese.eeese.data.DataUtils.RowHash
 import edu.uofk.eeese.eeese.data.DataUtils.Projects
 import edu.uofk.eeese.eeese.data.Event
 import edu.uofk.eeese.eeese.data.Project
 import edu.uofk.eeese.eeese.data.backend.ApiWrapper
+import edu.uofk.eeese.eeese.data.backend.ChangesReader
 import edu.uofk.eeese.eeese.data.database.DatabaseHelper
-import edu.uofk.eeese.eeese.util.FrameworkUtils.atLeastMarshmallow
+import io.reactivex.Observable
 import io.reactivex.Single
 import io.reactivex.schedulers.Schedulers
 import java.io.IOException
 import java.net.SocketTimeoutException
+import java.util.concurrent.ArrayBlockingQueue
 
 class SyncAdapter(context: Context,
                   private val backendClient: ApiWrapper,
@@ -45,10 +51,56 @@ class SyncAdapter(context: Context,
 
     companion object {
         val TAG: String = SyncAdapter::class.java.name
+
+        /**
+         * Sync extra to ignore the stored watermarks and download the whole catalog
+         */
+        val EXTRA_FULL_SYNC = "edu.uofk.eeese.eeese.sync.FULL_SYNC"
+
+        /**
+         * The most tables fetched at the same time
+         */
+        private val MAX_CONCURRENT_FETCHES = 4
+
+        /**
+         * The operations applied to the provider at a time. At most two batches of them are held
+         * in memory, the one being applied and the one the fetches are filling
+         */
+        private val BATCH_SIZE = 500
     }
 
     private val resolver = context.contentResolver!!
 
+    private val projects = SyncedTable(
+            name = "projects",
+            uri = ProjectEntry.CONTENT_URI,
+            tableName = ProjectEntry.TABLE_NAME,
+            idColumnName = ProjectEntry.COLUMN_PROJECT_ID,
+            hashColumnName = ProjectEntry.COLUMN_PROJECT_HASH,
+            getId = Project::id,
+            hash = { Projects.hash(it) },
+            toContentValues = { Projects.values(it) },
+            hashes = { Projects.hashes(it) },
+            all = { backendClient.projects() },
+            changes = { backendClient.projectChanges(it) })
+
+    private val events = SyncedTable(
+            name = "events",
+            uri = EventEntry.CONTENT_URI,
+            tableName = EventEntry.TABLE_NAME,
+            idColumnName = EventEntry.COLUMN_EVENT_ID,
+            hashColumnName = EventEntry.COLUMN_EVENT_HASH,
+            getId = Event::id,
+            hash = { Events.hash(it) },
+            toContentValues = { Events.values(it) },
+            hashes = { Events.hashes(it) },
+            all = { backendClient.events() },
+            changes = { backendClient.eventChanges(it) })
+
+    private val tables = listOf<(Boolean, (ContentProviderOperation) -> Unit) -> TableSync>(
+            { fullSync, write -> syncTable(projects, fullSync, write) },
+            { fullSync, write -> syncTable(events, fullSync, write) })
+
 
     @SuppressLint("Recycle")
     override fun onPerformSync(account: Account, extra: Bundle,
@@ -59,176 +111,210 @@ class SyncAdapter(context: Context,
 
         Log.d(TAG, "started sync")
 
-        Log.d(TAG, "syncing projects")
-
-        var projectOps = emptyList<ContentProviderOperation>()
+        val fullSync = extra.getBoolean(EXTRA_FULL_SYNC, false)
+
+        // Fetch every table concurrently, each on its own thread. Their operations are queued
+        // for this thread, which applies them, and the fetches wait while the queue is full
+        val writes = ArrayBlockingQueue<Any>(BATCH_SIZE)
+        Observable.fromIterable(tables)
+                .flatMap({ syncTable ->
+                    Observable.fromCallable { writes.put(syncTable(fullSync) { writes.put(it) }) }
+                            .subscribeOn(Schedulers.io())
+                }, MAX_CONCURRENT_FETCHES)
+                .subscribe()
+
+        // The batches are applied in one transaction, so the sync is still stored as a whole
+        val authorityUri = Uri.parse("${ContentResolver.SCHEME_CONTENT}://$authority")
+        val applyStart = SystemClock.elapsedRealtime()
+        resolver.call(authorityUri, DataContract.METHOD_BEGIN_BATCHES, null, null)
+        val results = ArrayList<TableSync>(tables.size)
+        val batch = ArrayList<ContentProviderOperation>(BATCH_SIZE)
+        var applied = 0L
+        var failed = false
+        var drained = false
         try {
-            //Projects Sync
-            val remoteProjects = backendClient.projects()
-                    .flattenAsObservable { it }
-                    .toMap { it.id }
-                    .subscribeOn(Schedulers.trampoline())
-                    .blockingGet()
-
-            Log.d(TAG, "Got remote projects: ${remoteProjects.size} projects")
-
-            val localProjects = Single
-                    .just(dbHelper.readableDatabase)
-                    .map { it.query(ProjectEntry.TABLE_NAME, null, null, null, null, null, null) }
-                    .map { Projects.projects(it) }
-                    .map { it.toList() }
-                    .subscribeOn(Schedulers.trampoline())
-                    .blockingGet()
-
-            Log.d(TAG, "Got local projects: ${localProjects.size} projects")
+            // Every table's operations are drained, even after a failure, so no fetch is left
+            // waiting on the queue
+            while (results.size < tables.size) {
+                val next = writes.take()
+                if (next is TableSync) {
+                    results.add(next)
+                } else if (!failed) {
+                    batch.add(next as ContentProviderOperation)
+                    if (batch.size >= BATCH_SIZE) {
+                        failed = !apply(authority, batch)
+                        applied += batch.size
+                        batch.clear()
+                    }
+                }
+            }
+            if (!failed && batch.isNotEmpty()) {
+                failed = !apply(authority, batch)
+                applied += batch.size
+            }
+            drained = true
+        } finally {
+            val end = Bundle()
+            end.putBoolean(DataContract.KEY_SUCCESSFUL, drained && !failed)
+            resolver.call(authorityUri, DataContract.METHOD_END_BATCHES, null, end)
+        }
 
-            projectOps = projectOperations(localProjects, remoteProjects)
+        for (result in results) {
+            syncResult.stats.numEntries += result.operations.count
+            syncResult.stats.numInserts += result.operations.inserts
+            syncResult.stats.numUpdates += result.operations.updates
+            syncResult.stats.numDeletes += result.operations.deletes
+            if (result.ioException) {
+                syncResult.stats.numIoExceptions++
+                syncResult.databaseError = true
+            }
+            if (result.timedOut) {
+                syncResult.fullSyncRequested = true
+            }
+        }
 
-            Log.d(TAG, "finished projects calculations: ${projectOps.size} operations")
+        Log.d(TAG, "Total Number: ${syncResult.stats.numEntries}")
+        Log.d(TAG, "Insertions: ${syncResult.stats.numInserts}")
+        Log.d(TAG, "Updates: ${syncResult.stats.numUpdates}")
+        Log.d(TAG, "Deletions: ${syncResult.stats.numDeletes}")
 
-        } catch (e: SocketTimeoutException) {
-            syncResult.stats.numIoExceptions++
-            syncResult.fullSyncRequested = true
-        } catch (e: IOException) {
-            syncResult.stats.numIoExceptions++
+        if (failed) {
             syncResult.databaseError = true
-        } catch (ignored: Exception) {
-            Log.e(TAG, "Unknown exception: $ignored")
+            return
+        }
+        // The tables are applied in one transaction, so they are timed together,
+        // along with the fetches they waited on
+        Log.i(TAG, "applied $applied operations in " +
+                "${SystemClock.elapsedRealtime() - applyStart} ms (" +
+                results.joinToString { "${it.table.name}: ${it.operations.count}" } + ")")
+
+        // Only move the watermarks forward once the changes are stored,
+        // if the sync dies before this the same changes are just fetched and applied again
+        for (result in results) {
+            result.watermark?.let { dbHelper.setWatermark(result.table.tableName, it) }
         }
+        dbHelper.checkpoint()
+    }
 
-        //Events Sync
-        Log.d(TAG, "syncing events")
-        var eventOps = emptyList<ContentProviderOperation>()
+    /**
+     * Applies a batch of the sync, in the transaction the sync holds
+     *
+     * @return whether it was applied
+     */
+    private fun apply(authority: String, batch: ArrayList<ContentProviderOperation>): Boolean =
+            try {
+                resolver.applyBatch(authority, batch)
+                true
+            } catch (e: Exception) {
+                Log.e(TAG, "Could not apply the changes: $e")
+                false
+            }
 
+    /**
+     * Calculates the operations needed to sync the table, using the changes since the stored
+     * watermark when there is one, and the whole catalog otherwise.
+     * The changes are streamed from the response and turned into operations as they are read,
+     * which are passed to [write] right away.
+     */
+    private fun <Item : Any> syncTable(table: SyncedTable<Item>, fullSync: Boolean,
+                                       write: (ContentProviderOperation) -> Unit): TableSync {
+        Log.d(TAG, "syncing ${table.name}")
+        val start = SystemClock.elapsedRealtime()
+        val operations = SyncOperations(write)
+        val result = TableSync(table, operations)
         try {
+            val since = if (fullSync) null else dbHelper.watermark(table.tableName)
+            result.watermark = table.delta.find(since, changes(table, since),
+                    all = {
+                        val remote = table.all()
+                                .flattenAsObservable { it }
+                                .toMap { table.getId(it) }
+                                .subscribeOn(Schedulers.trampoline())
+                                .blockingGet()
+                        Log.d(TAG, "Got remote ${table.name}: ${remote.size} ${table.name}")
+                        remote
+                    },
+                    local = { localHashes(table) },
+                    out = table.changesInto(operations))
+
+            // A table that fails half way through keeps its watermark, so the changes already
+            // written are just fetched and written again by the next sync
+            Log.d(TAG, "finished ${table.name} calculations: ${operations.count} operations")
 
-            val remoteEvents = backendClient.events()
-                    .flattenAsObservable { it }
-                    .toMap { it.id }
-                    .subscribeOn(Schedulers.trampoline())
-                    .blockingGet()
-            Log.d(TAG, "Got remote events: ${remoteEvents.size} events")
-
-
-            val localEvents = Single
-                    .just(dbHelper.readableDatabase)
-                    .map { it.query(EventEntry.TABLE_NAME, null, null, null, null, null, null) }
-                    .map { Events.events(it) }
-                    .map { it.toList() }
-                    .subscribeOn(Schedulers.trampoline())
-                    .blockingGet()
-            Log.d(TAG, "Got local events: ${localEvents.size} events")
-
-            eventOps = eventOperations(localEvents, remoteEvents)
-
-            Log.d(TAG, "finished projects calculations: ${eventOps.size} operations")
         } catch (e: SocketTimeoutException) {
-            syncResult.stats.numIoExceptions++
-            syncResult.fullSyncRequested = true
-
+            result.ioException = true
+            result.timedOut = true
         } catch (e: IOException) {
-            syncResult.stats.numIoExceptions++
-
+            result.ioException = true
         } catch (ignored: Exception) {
             Log.e(TAG, "Unknown exception: $ignored")
         }
+        // Fetching and diffing are timed together, the changes are diffed as they are read
+        Log.i(TAG, "${table.name}: fetched and diffed in " +
+                "${SystemClock.elapsedRealtime() - start} ms, " +
+                "${result.operations.count} operations")
+        return result
+    }
 
-        //Apply changes
-        val operations = ArrayList(projectOps + eventOps)
-
-        @SuppressLint("NewApi")
-        if (atLeastMarshmallow) {
-            syncResult.stats.numEntries = operations.count().toLong()
-            syncResult.stats.numInserts = operations.count { it.isInsert }.toLong()
-            syncResult.stats.numUpdates = operations.count { it.isUpdate }.toLong()
-            syncResult.stats.numDeletes = operations.count { it.isDelete }.toLong()
+    private fun <Item : Any> changes(table: SyncedTable<Item>,
+                                     since: String?): ChangesReader<Item>? =
+            try {
+                table.changes(since)
+                        .subscribeOn(Schedulers.trampoline())
+                        .blockingGet()
+            } catch (e: Exception) {
+                Log.w(TAG, "Could not get the ${table.name} changes: $e")
+                null
+            }
 
-            Log.d(TAG, "Total Number: ${syncResult.stats.numEntries}")
-            Log.d(TAG, "Insertions: ${syncResult.stats.numInserts}")
-            Log.d(TAG, "Updates: ${syncResult.stats.numUpdates}")
-            Log.d(TAG, "Deletions: ${syncResult.stats.numDeletes}")
-        }
-        Log.d(TAG, "preforming updates")
-        resolver.applyBatch(authority, operations)
+    private fun localHashes(table: SyncedTable<*>): Iterable<RowHash> =
+            table.hashes(dbHelper.readableDatabase
+                    .query(table.tableName, arrayOf(table.idColumnName, table.hashColumnName),
+                            null, null, null, null, null))
 
-        //Notify content observers
-        if (projectOps.isNotEmpty()) {
-            resolver.notifyChange(ProjectEntry.CONTENT_URI, null, false)
-        }
-        if (eventOps.isNotEmpty()) {
-            resolver.notifyChange(EventEntry.CONTENT_URI, null, false)
-        }
+    private class TableSync(val table: SyncedTable<*>, val operations: SyncOperations) {
+        var watermark: String? = null
+        var ioException = false
+        var timedOut = false
     }
 
-    private fun projectOperations(local: List<Project>,
-                                  remote: Map<String, Project>): List<ContentProviderOperation> =
-            calculateOperations(uri = ProjectEntry.CONTENT_URI,
-                    idColumnName = ProjectEntry.COLUMN_PROJECT_ID,
-                    local = local, remote = remote,
-                    getId = Project::id,
-                    toContentValues = { Projects.values(it) })
-
-
-    private fun eventOperations(local: List<Event>,
-                                remote: Map<String, Event>): List<ContentProviderOperation> =
-            calculateOperations(uri = EventEntry.CONTENT_URI,
-                    idColumnName = EventEntry.COLUMN_EVENT_ID,
-                    local = local, remote = remote,
-                    getId = Event::id,
-                    toContentValues = { Events.values(it) })
-
-    private tailrec fun <Item, ID> calculateOperations(uri: Uri,
-                                                       idColumnName: String,
-                                                       local: List<Item>,
-                                                       remote: Map<in ID, Item>,
-                                                       getId: (Item) -> ID,
-                                                       toContentValues: (Item) -> ContentValues,
-                                                       operations: List<ContentProviderOperation>
-                                                       = emptyList()):
-            List<ContentProviderOperation> =
-            if (local.isEmpty()) {
-                // If there are no local items just add all the remote items
-                operations + remote
-                        .map { it.value }
-                        .map { toContentValues(it) }
-                        .map {
-                            ContentProviderOperation.newInsert(uri)
-                                    .withValues(it)
-                                    .build()
-                        }
-            } else {
-                // If there is a local item...
-                val item = local.first()
-                val id = getId(item)
-                val newLocal = local.drop(1)
-
-                if (id in remote) {
-                    // and the same id exists in the remote list...
-                    val remoteItem = remote[id]!!
-                    val newRemote = remote - id
-                    if (item == remoteItem) {
-                        // and it was not changed, just skip it
-                        calculateOperations(uri, idColumnName,
-                                newLocal, newRemote, getId, toContentValues, operations)
-                    } else {
-                        // and it was changed, update it
-                        val newOperations = operations + ContentProviderOperation
-                                .newUpdate(uri)
-                                .withSelection("$idColumnName = ?", arrayOf(id.toString()))
-                                .withValues(toContentValues(remoteItem))
-                                .build()
-                        calculateOperations(uri, idColumnName,
-                                newLocal, newRemote, getId, toContentValues, newOperations)
-                    }
-                } else {
-                    // but it doesn't exist in the remote list, delete it
-                    val newOperations = operations + ContentProviderOperation
-                            .newDelete(uri)
-                            .withSelection("$idColumnName = ?", arrayOf(id.toString()))
-                            .build()
-                    calculateOperations(uri, idColumnName,
-                            newLocal, remote, getId, toContentValues, newOperations)
-                }
-            }
+    private class SyncedTable<Item : Any>(val name: String,
+                                          val uri: Uri,
+                                          val tableName: String,
+                                          val idColumnName: String,
+                                          val hashColumnName: String,
+                                          val getId: (Item) -> String,
+                                          val hash: (Item) -> Long,
+                                          val toContentValues: (Item) -> ContentValues,
+                                          val hashes: (Cursor) -> Iterable<RowHash>,
+                                          val all: () -> Single<List<Item>>,
+                                          val changes: (String?) -> Single<ChangesReader<Item>>) {
+
+        val delta = TableDelta(getId, hash)
+
+        /**
+         * Turns the changes of the table into provider operations
+         */
+        fun changesInto(operations: SyncOperations) = object : TableChanges<Item> {
+            override fun insert(item: Item) = operations.insert(this@SyncedTable.insert(item))
+            override fun update(item: Item) = operations.update(this@SyncedTable.update(item))
+            override fun delete(id: String) = operations.delete(this@SyncedTable.delete(id))
+        }
 
+        fun insert(item: Item): ContentProviderOperation =
+                ContentProviderOperation.newInsert(uri)
+                        .withValues(toContentValues(item))
+                        .build()
+
+        fun update(item: Item): ContentProviderOperation =
+                ContentProviderOperation.newUpdate(uri)
+                        .withSelection("$idColumnName = ?", arrayOf(getId(item)))
+                        .withValues(toContentValues(item))
+                        .build()
+
+        fun delete(id: String): ContentProviderOperation =
+                ContentProviderOperation.newDelete(uri)
+                        .withSelection("$idColumnName = ?", arrayOf(id))
+                        .build()
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.sync
+
+/**
+ * The changes needed to bring a local collection in line with the remote one
+ */
+data class SyncDiff<out ID, out Item>(val insertions: List<Item>,
+                                      val updates: List<Item>,
+                                      val deletions: List<ID>) {
+
+    val size: Int get() = insertions.size + updates.size + deletions.size
+
+    companion object {
+
+        /**
+         * Calculates the difference between the local and the remote items in a single pass
+         * over the local items and a single pass over the remote items, using the remote map
+         * as a hash index on the item ids
+         *
+         * @param local the local items, only iterated once
+         * @param remote the remote items keyed by their ids
+         * @param getId extracts the id of a local item
+         * @param unchanged whether the local item is the same as its remote counterpart
+         * @return the remote items to insert or update, and the ids of the local items to delete
+         */
+        fun <ID, Local, Remote : Any> calculate(local: Iterable<Local>,
+                                                remote: Map<ID, Remote>,
+                                                getId: (Local) -> ID,
+                                                unchanged: (Local, Remote) -> Boolean):
+                SyncDiff<ID, Remote> {
+            val updates = ArrayList<Remote>()
+            val deletions = ArrayList<ID>()
+            val matched = HashSet<ID>(capacity(remote.size))
+
+            for (item in local) {
+                val id = getId(item)
+                val remoteItem = remote[id]
+                if (remoteItem == null) {
+                    // it doesn't exist in the remote list, delete it
+                    deletions.add(id)
+                } else {
+                    matched.add(id)
+                    if (!unchanged(item, remoteItem)) {
+                        updates.add(remoteItem)
+                    }
+                }
+            }
+
+            // Whatever remote item was not matched by a local one is new
+            val insertions = ArrayList<Remote>(Math.max(remote.size - matched.size, 0))
+            for ((id, item) in remote) {
+                if (id !in matched) {
+                    insertions.add(item)
+                }
+            }
+
+            return SyncDiff(insertions, updates, deletions)
+        }
+
+        fun <ID, Item : Any> calculate(local: Iterable<Item>,
+                                       remote: Map<ID, Item>,
+                                       getId: (Item) -> ID): SyncDiff<ID, Item> =
+                calculate(local, remote, getId) { localItem, remoteItem -> localItem == remoteItem }
+
+        private fun capacity(size: Int) = if (size < 3) size + 1 else (size / 0.75f + 1).toInt()
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.sync
+
+import android.content.ContentProviderOperation
+
+/**
+ * The provider operations of a sync, counted by kind for the sync stats, and passed on to
+ * [write] as they are made instead of being held
+ */
+class SyncOperations(private val write: (ContentProviderOperation) -> Unit) {
+
+    var inserts = 0L
+        private set
+    var updates = 0L
+        private set
+    var deletes = 0L
+        private set
+
+    val count: Long get() = inserts + updates + deletes
+
+    fun insert(operation: ContentProviderOperation) {
+        inserts++
+        write(operation)
+    }
+
+    fun update(operation: ContentProviderOperation) {
+        updates++
+        write(operation)
+    }
+
+    fun delete(operation: ContentProviderOperation) {
+        deletes++
+        write(operation)
+    }
+}
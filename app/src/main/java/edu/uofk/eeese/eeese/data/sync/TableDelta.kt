@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.sync
+
+import edu.uofk.eeese.eeese.data.DataUtils.RowHash
+import edu.uofk.eeese.eeese.data.backend.ChangesReader
+
+/**
+ * Receives the changes a sync finds for a table
+ */
+interface TableChanges<in Item> {
+    fun insert(item: Item)
+    fun update(item: Item)
+    fun delete(id: String)
+}
+
+/**
+ * Finds the changes that bring a table in line with the server, from the changes since its
+ * watermark when the server sends them, and from its whole catalog otherwise
+ */
+class TableDelta<Item : Any>(private val getId: (Item) -> String,
+                             private val hash: (Item) -> Long) {
+
+    /**
+     * @param since the stored watermark, null to read the whole catalog
+     * @param changes the changes since [since], null when the server could not send them
+     * @param all the whole remote catalog keyed by id, only read when there are no changes
+     * @param local the ids and hashes of the stored rows, only read when they are needed
+     * @return the new watermark, null when the catalog was diffed without one
+     */
+    fun find(since: String?,
+             changes: ChangesReader<Item>?,
+             all: () -> Map<String, Item>,
+             local: () -> Iterable<RowHash>,
+             out: TableChanges<Item>): String? =
+            if (changes == null) {
+                // The server doesn't support deltas, diff against the whole catalog.
+                // It is fetched first, so a failed fetch never leaves the local rows open
+                val remote = all()
+                diff(local(), remote, out)
+                null
+            } else {
+                changes.use {
+                    if (since == null) catalog(local(), it, out)
+                    else changes(it, out)
+                }
+            }
+
+    /**
+     * Compares the stored row hashes with the hashes of the remote items
+     */
+    fun diff(local: Iterable<RowHash>, remote: Map<String, Item>, out: TableChanges<Item>) {
+        val diff = SyncDiff.calculate(local, remote, RowHash::id) { row, item ->
+            row.hash == hash(item)
+        }
+        diff.deletions.forEach { out.delete(it) }
+        diff.updates.forEach { out.update(it) }
+        diff.insertions.forEach { out.insert(it) }
+    }
+
+    /**
+     * Streams the whole catalog against the stored row hashes. Only the compact id to hash index
+     * of the local rows is kept in memory, the remote records are passed on as they are read
+     *
+     * @return the new watermark
+     */
+    fun catalog(local: Iterable<RowHash>, changes: ChangesReader<Item>,
+                out: TableChanges<Item>): String {
+        val hashes = HashMap<String, Long>()
+        local.forEach { hashes.put(it.id, it.hash) }
+
+        val watermark = changes.read(
+                onChanged = {
+                    val stored = hashes.remove(getId(it))
+                    when (stored) {
+                        null -> out.insert(it)
+                        hash(it) -> Unit
+                        else -> out.update(it)
+                    }
+                },
+                onDeleted = {
+                    if (hashes.remove(it) != null) {
+                        out.delete(it)
+                    }
+                })
+
+        // whatever was not in the catalog was deleted on the server
+        hashes.keys.forEach { out.delete(it) }
+        return watermark
+    }
+
+    /**
+     * Passes the server changes on as they are read, without looking at the local rows.
+     * Inserts replace any existing row with the same id, and deleting a missing row does nothing
+     *
+     * @return the new watermark
+     */
+    fun changes(changes: ChangesReader<Item>, out: TableChanges<Item>): String =
+            changes.read(onChanged = { out.insert(it) }, onDeleted = { out.delete(it) })
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.events
+
+import edu.uofk.eeese.eeese.data.Event
+import java.text.DateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.TimeZone
+
+/**
+ * An event with its dates formatted for the list, null when the event does not have them,
+ * so that showing it only sets text
+ */
+data class EventDisplay(val event: Event,
+                        val startDate: String?, val startTime: String?,
+                        val endDate: String?, val endTime: String?) {
+    val hasLocation: Boolean
+        get() = event.latitude != null && event.longitude != null
+}
+
+/**
+ * Formats the dates of events, keeping the formats of every locale and time zone
+ * so each is created once
+ */
+object EventDisplays {
+
+    private class Formats(locale: Locale, zone: TimeZone) {
+        val date: DateFormat = DateFormat.getDateInstance(DateFormat.DEFAULT, locale)
+        val time: DateFormat = DateFormat.getTimeInstance(DateFormat.DEFAULT, locale)
+
+        init {
+            date.timeZone = zone
+            time.timeZone = zone
+        }
+    }
+
+    // Keyed by the locale and the id of the time zone
+    private val formats = HashMap<Pair<Locale, String>, Formats>()
+
+    /**
+     * Formats the dates of [events] in [locale] and [zone]
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun of(events: List<Event>, locale: Locale = Locale.getDefault(),
+           zone: TimeZone = TimeZone.getDefault()): List<EventDisplay> {
+        val formats = synchronized(this.formats) {
+            this.formats.getOrPut(Pair(locale, zone.id)) { Formats(locale, zone) }
+        }
+        // Date formats are not thread safe
+        synchronized(formats) {
+            // One date is reused to format every event
+            val date = Date()
+            return events.map { event ->
+                val start = event.start?.millis
+                val end = event.end?.millis
+                EventDisplay(event,
+                        startDate = start?.let { formats.date.format(date.apply { time = it }) },
+                        startTime = start?.let { formats.time.format(date.apply { time = it }) },
+                        endDate = end?.let { formats.date.format(date.apply { time = it }) },
+                        endTime = end?.let { formats.time.format(date.apply { time = it }) })
+            }
+        }
+    }
+}
@@ -25,8 +25,8 @@ import android.widget.Toast
 import com.transitionseverywhere.TransitionManager
 import edu.uofk.eeese.eeese.EEESEapp
 import edu.uofk.eeese.eeese.R
-import edu.uofk.eeese.eeese.data.Event
 import edu.uofk.eeese.eeese.util.ActivityUtils
+import edu.uofk.eeese.eeese.util.LoadMoreScrollListener
 import edu.uofk.eeese.eeese.util.OffsetItemDecorator
 import edu.uofk.eeese.eeese.util.ViewUtils
 import io.reactivex.disposables.Disposable
@@ -40,7 +40,7 @@ class EventsActivity : AppCompatActivity(), EventsContract.View {
 
 
     private var eventLocationClicks: Disposable = Disposables.disposed()
-    private var eventsAdapter: EventsAdapter = EventsAdapter()
+    private val eventsAdapter: EventsAdapter = EventsAdapter()
 
     @Inject lateinit var eventsPresenter: EventsContract.Presenter
 
@@ -81,6 +81,10 @@ class EventsActivity : AppCompatActivity(), EventsContract.View {
         events_list.layoutManager = LinearLayoutManager(this, LinearLayoutManager.VERTICAL, false)
         events_list.addItemDecoration(
                 OffsetItemDecorator(vertical_offset.value, horizontal_offset.value, 1))
+        events_list.addOnScrollListener(LoadMoreScrollListener(
+                resources.getInteger(R.integer.load_more_threshold)) {
+            eventsPresenter.loadMoreEvents()
+        })
 
         reload_button.setOnClickListener { reloadEvents() }
 
@@ -105,6 +109,7 @@ class EventsActivity : AppCompatActivity(), EventsContract.View {
     override fun onPause() {
         super.onPause()
         eventsPresenter.unsubscribe()
+        eventsAdapter.cancelUpdate()
         eventLocationClicks.dispose()
     }
 
@@ -116,10 +121,8 @@ class EventsActivity : AppCompatActivity(), EventsContract.View {
         swipe_refresh.isRefreshing = false
     }
 
-    override fun showEvents(events: List<Event>) {
-        eventsAdapter = EventsAdapter(events)
-        events_list.swapAdapter(eventsAdapter, false)
-        registerEventClicks()
+    override fun showEvents(events: List<EventDisplay>) {
+        eventsAdapter.update(events)
 
         if (events_list.visibility != View.VISIBLE) {
             TransitionManager.beginDelayedTransition(swipe_refresh)
@@ -128,6 +131,10 @@ class EventsActivity : AppCompatActivity(), EventsContract.View {
         error_view.visibility = View.GONE
     }
 
+    override fun showMoreEvents(events: List<EventDisplay>) {
+        eventsAdapter.append(events)
+    }
+
     override fun showNoEvents() {
         if (error_view.visibility != View.VISIBLE) {
             TransitionManager.beginDelayedTransition(swipe_refresh)
@@ -21,78 +21,139 @@ import android.widget.TextView
 import com.jakewharton.rxbinding2.view.RxView
 import com.squareup.picasso.Picasso
 import edu.uofk.eeese.eeese.R
-import edu.uofk.eeese.eeese.data.Event
+import edu.uofk.eeese.eeese.util.ListDiffer
 import io.reactivex.Observable
 import io.reactivex.subjects.PublishSubject
 import kotlinx.android.synthetic.main.event_list_item.view.*
-import org.joda.time.DateTimeZone
-import java.text.DateFormat
 
-class EventsAdapter constructor(events: List<Event>? = emptyList<Event>()) :
-        RecyclerView.Adapter<EventsAdapter.ViewHolder>() {
+class EventsAdapter : RecyclerView.Adapter<EventsAdapter.ViewHolder>() {
 
-    private val events = events ?: ArrayList<Event>()
+    private val differ = ListDiffer<EventDisplay>(this) { it.event.id }
+    private val events: List<EventDisplay>
+        get() = differ.items
     private val locationClicksSubject = PublishSubject.create<Pair<String, String>>()
+    // The size of the measured image views, 0 until one is
+    private var imageWidth = 0
+    private var imageHeight = 0
+    private var prefetchDistance = 0
+    // The last position bound, telling the direction of the scroll
+    private var lastBound = 0
+
+    init {
+        setHasStableIds(true)
+    }
 
+    // The clicks are wired once for each holder, to whatever event it is bound to when clicked
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
+        prefetchDistance = parent.resources.getInteger(R.integer.image_prefetch_distance)
         val view = LayoutInflater.from(parent.context)
                 .inflate(R.layout.event_list_item, parent, false)
-        return ViewHolder(view)
+        val holder = ViewHolder(view)
+        RxView.clicks(holder.locationButton)
+                .map { holder.adapterPosition }
+                .filter { it != RecyclerView.NO_POSITION }
+                .map { events[it].event }
+                .filter { it.latitude != null && it.longitude != null }
+                .map { Pair(it.latitude.toString(), it.longitude.toString()) }
+                .subscribe(locationClicksSubject)
+        return holder
     }
 
     override fun onBindViewHolder(holder: ViewHolder, position: Int) {
-        val event = events[position]
+        val display = events[position]
+        val event = display.event
         holder.name.text = event.name
         holder.desc.text = event.desc
 
-        val dateFormat = DateFormat.getDateInstance()
-        val timeFormat = DateFormat.getTimeInstance()
-
-        if (event.start != null) {
-            val start = event.start.withZone(DateTimeZone.getDefault()).toDate()
-            holder.startDate.text = dateFormat.format(start)
+        if (display.startDate != null) {
+            holder.startDate.text = display.startDate
             holder.startTime.visibility = View.VISIBLE
-            holder.startTime.text = timeFormat.format(start)
+            holder.startTime.text = display.startTime
         } else {
             holder.startDate.setText(R.string.unspecified)
             holder.startTime.visibility = View.INVISIBLE
         }
 
-        if (event.end != null) {
-            val end = event.end
-                    .withZone(DateTimeZone.getDefault())
-                    .toDate()
-            holder.endDate.text = dateFormat.format(end)
+        if (display.endDate != null) {
+            holder.endDate.text = display.endDate
             holder.endTime.visibility = View.VISIBLE
-            holder.endTime.text = timeFormat.format(end)
+            holder.endTime.text = display.endTime
         } else {
             holder.endDate.setText(R.string.unspecified)
             holder.endTime.visibility = View.INVISIBLE
         }
 
-
-        holder.longitude = event.longitude
-        holder.latitude = event.latitude
-
-        if (holder.longitude != null && holder.latitude != null) {
+        if (display.hasLocation) {
             holder.locationButton.visibility = View.VISIBLE
-            RxView.clicks(holder.locationButton)
-                    .map { Pair<String, String>(holder.latitude, holder.longitude) }
-                    .subscribe(locationClicksSubject)
         } else {
             holder.locationButton.visibility = View.GONE
         }
 
+        val picasso = Picasso.with(holder.itemView.context)
         if (event.imageUri != null) {
             holder.image.visibility = View.VISIBLE
-            Picasso.with(holder.itemView.context)
-                    .load(event.imageUri)
+            // Every image view has the size of the last one measured
+            if (holder.image.width > 0 && holder.image.height > 0) {
+                imageWidth = holder.image.width
+                imageHeight = holder.image.height
+            }
+            picasso.load(event.imageUri)
+                    .fit()
+                    .centerCrop()
                     .into(holder.image)
         } else {
+            picasso.cancelRequest(holder.image)
             holder.image.visibility = View.GONE
         }
+        prefetchImages(picasso, position)
+    }
+
+    /**
+     * Decodes the images of the next few events in the direction of the scroll into the memory
+     * cache, at the size the bind of each will ask for once the views are measured
+     */
+    private fun prefetchImages(picasso: Picasso, position: Int) {
+        val direction = if (position >= lastBound) 1 else -1
+        lastBound = position
+        if (imageWidth == 0) {
+            return
+        }
+        for (distance in 1..prefetchDistance) {
+            val prefetched = position + direction * distance
+            if (prefetched < 0 || prefetched >= events.size) {
+                break
+            }
+            val uri = events[prefetched].event.imageUri ?: continue
+            picasso.load(uri)
+                    .resize(imageWidth, imageHeight)
+                    .centerCrop()
+                    .priority(Picasso.Priority.LOW)
+                    .fetch()
+        }
     }
 
+    override fun onViewRecycled(holder: ViewHolder) {
+        // The image would otherwise still be loaded into a view showing another event
+        Picasso.with(holder.itemView.context).cancelRequest(holder.image)
+    }
+
+    /**
+     * Shows [events] instead of the current events, changing only the ones that differ
+     */
+    fun update(events: List<EventDisplay>) = differ.submit(events)
+
+    /**
+     * Adds the next page of events to the end of the list
+     */
+    fun append(page: List<EventDisplay>) = differ.append(page)
+
+    /**
+     * Drops the list waiting to be shown, if there is one
+     */
+    fun cancelUpdate() = differ.cancel()
+
+    override fun getItemId(position: Int): Long = differ.itemId(position)
+
     override fun getItemCount(): Int = events.size
 
     fun locationClicks(): Observable<Pair<String, String>> = locationClicksSubject
@@ -109,8 +170,5 @@ class EventsAdapter constructor(events: List<Event>? = emptyList<Event>()) :
 
         val endTime: TextView = itemView.end_time
         val locationButton: Button = itemView.location_button
-
-        var longitude: String? = null
-        var latitude: String? = null
     }
 }
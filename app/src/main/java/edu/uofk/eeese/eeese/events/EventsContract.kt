@@ -12,19 +12,20 @@ package edu.uofk.eeese.eeese.events;
 
 import edu.uofk.eeese.eeese.BasePresenter
 import edu.uofk.eeese.eeese.BaseView
-import edu.uofk.eeese.eeese.data.Event
 
 interface EventsContract {
 
     interface View : BaseView<Presenter> {
         fun showLoadingIndicator(): Unit
         fun hideLoadingIndicator(): Unit
-        fun showEvents(events: List<Event>): Unit
+        fun showEvents(events: List<EventDisplay>): Unit
+        fun showMoreEvents(events: List<EventDisplay>): Unit
         fun showNoEvents(): Unit
         fun showConnectionError(): Unit
     }
 
     interface Presenter : BasePresenter {
         fun loadEvents(forceUpdate: Boolean): Unit
+        fun loadMoreEvents(): Unit
     }
 }
@@ -13,7 +13,7 @@ package edu.uofk.eeese.eeese.events;
 import dagger.Module;
 import dagger.Provides;
 import edu.uofk.eeese.eeese.data.Event;
-import edu.uofk.eeese.eeese.data.source.Repository;
+import edu.uofk.eeese.eeese.data.source.PagedRepository;
 import edu.uofk.eeese.eeese.di.scopes.ActivityScope;
 
 @Module
@@ -31,7 +31,8 @@ public class EventsModule {
 
     @Provides
     @ActivityScope
-    EventsContract.Presenter providePresenter(EventsContract.View view, Repository<Event> source) {
+    EventsContract.Presenter providePresenter(EventsContract.View view,
+                                              PagedRepository<Event, Event> source) {
         return new EventsPresenter(view, source);
     }
 }
@@ -11,19 +11,36 @@
 package edu.uofk.eeese.eeese.events
 
 import edu.uofk.eeese.eeese.data.Event
-import edu.uofk.eeese.eeese.data.source.Repository
+import edu.uofk.eeese.eeese.data.source.AnyRow
+import edu.uofk.eeese.eeese.data.source.PagedRepository
 import edu.uofk.eeese.eeese.di.scopes.ActivityScope
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.disposables.Disposable
+import io.reactivex.disposables.Disposables
 import io.reactivex.schedulers.Schedulers
 import javax.inject.Inject
 
 @ActivityScope
 class EventsPresenter @Inject
 constructor(private val view: EventsContract.View,
-            private val source: Repository<Event>) : EventsContract.Presenter {
+            private val source: PagedRepository<Event, Event>) : EventsContract.Presenter {
+
+    companion object {
+        private const val PAGE_SIZE = 20
+    }
 
     private val subscriptions: CompositeDisposable = CompositeDisposable()
+    // The next page while it is loading
+    private val morePages: CompositeDisposable = CompositeDisposable()
+    // The events of every page loaded so far, re-queried whenever they change
+    private var loaded: Disposable = Disposables.disposed()
+
+    private var lastEvent: Event? = null
+    private var loadingMore = false
+    private var allLoaded = false
+    // How many rows the list shows, to tell whether a reload grew
+    private var loadedCount = 0
 
     override fun loadEvents(forceUpdate: Boolean): Unit {
         if (forceUpdate) {
@@ -32,14 +49,33 @@ constructor(private val view: EventsContract.View,
             subscriptions.add(sync)
         }
 
-        val subscription =
-                source.get()
+        observeLoaded(lastEvent)
+    }
+
+    /**
+     * Observes the events of the pages up to [through], or the first page if it is null,
+     * so coming back to the list or a change keeps the pages loaded so far
+     */
+    private fun observeLoaded(through: Event?) {
+        subscriptions.remove(loaded)
+        loaded =
+                (if (through == null) source.getPage(AnyRow, null, PAGE_SIZE)
+                 else source.getThrough(AnyRow, through))
                         .subscribeOn(Schedulers.io())
+                        // Formatted once for each change, on the thread the query ran on
+                        .map { EventDisplays.of(it) }
                         .observeOn(AndroidSchedulers.mainThread())
                         .doOnEach { view.hideLoadingIndicator() }
                         .subscribe(
                                 //On Next
                                 {
+                                    lastEvent = it.lastOrNull()?.event
+                                    // Once a short page showed every row is loaded,
+                                    // only a reload that grew, as after a sync,
+                                    // is worth another page query
+                                    if (through == null) allLoaded = it.size < PAGE_SIZE
+                                    else if (it.size > loadedCount) allLoaded = false
+                                    loadedCount = it.size
                                     if (it.isNotEmpty()) view.showEvents(it)
                                     else view.showNoEvents()
                                 },
@@ -47,12 +83,45 @@ constructor(private val view: EventsContract.View,
                                 {
                                     view.showConnectionError()
                                 })
-        subscriptions.add(subscription)
+        subscriptions.add(loaded)
+    }
+
+    override fun loadMoreEvents() {
+        val after = lastEvent
+        if (loadingMore || allLoaded || after == null) {
+            return
+        }
+        loadingMore = true
+        val subscription =
+                source.getPage(AnyRow, after, PAGE_SIZE)
+                        .take(1)
+                        .subscribeOn(Schedulers.io())
+                        .map { EventDisplays.of(it) }
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(
+                                //On Next
+                                {
+                                    loadingMore = false
+                                    allLoaded = it.size < PAGE_SIZE
+                                    loadedCount += it.size
+                                    if (it.isNotEmpty()) {
+                                        view.showMoreEvents(it)
+                                        observeLoaded(it.last().event)
+                                    }
+                                },
+                                //OnError
+                                {
+                                    loadingMore = false
+                                    view.showConnectionError()
+                                })
+        morePages.add(subscription)
     }
 
     override fun subscribe(): Unit {}
 
     override fun unsubscribe(): Unit {
         subscriptions.clear()
+        morePages.clear()
+        loadingMore = false
     }
 }
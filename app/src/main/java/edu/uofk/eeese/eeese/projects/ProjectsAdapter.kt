@@ -17,44 +17,69 @@ import android.view.ViewGroup
 import android.widget.TextView
 import com.jakewharton.rxbinding2.view.RxView
 import edu.uofk.eeese.eeese.R
-import edu.uofk.eeese.eeese.data.Project
+import edu.uofk.eeese.eeese.data.ProjectSummary
+import edu.uofk.eeese.eeese.util.ListDiffer
 import io.reactivex.Observable
 import io.reactivex.subjects.PublishSubject
 import kotlinx.android.synthetic.main.project_list_item.view.*
 
-internal class ProjectsAdapter
-constructor(private val projects: List<Project> = emptyList<Project>()) :
-        RecyclerView.Adapter<ViewHolder>() {
+internal class ProjectsAdapter : RecyclerView.Adapter<ViewHolder>() {
+
+    private val differ = ListDiffer<ProjectSummary>(this) { it.id }
+    private val projects: List<ProjectSummary>
+        get() = differ.items
+
+    init {
+        setHasStableIds(true)
+    }
 
     private val projectClicksSubject = PublishSubject.create<ProjectClick>()
 
     fun projectClicks(): Observable<ProjectClick> = projectClicksSubject
 
 
+    // The clicks are wired once for each holder, to whatever project it is bound to when clicked
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
         val view = LayoutInflater.from(parent.context)
                 .inflate(R.layout.project_list_item, parent, false)
-        return ViewHolder(view)
-    }
-
-    override fun onBindViewHolder(holder: ViewHolder, position: Int) {
-        val project = projects[position]
-
+        val holder = ViewHolder(view)
         RxView.clicks(holder.card)
                 .map { holder.adapterPosition }
+                .filter { it != RecyclerView.NO_POSITION }
                 .map { clickPosition -> ProjectClick(projects[clickPosition], holder.card) }
-                .subscribeWith(projectClicksSubject)
+                .subscribe(projectClicksSubject)
+        return holder
+    }
 
+    override fun onBindViewHolder(holder: ViewHolder, position: Int) {
+        val project = projects[position]
         holder.name.text = project.name
         holder.head.text = project.head
     }
 
+    /**
+     * Shows [projects] instead of the current projects, changing only the ones that differ
+     */
+    fun update(projects: List<ProjectSummary>) = differ.submit(projects)
+
+    /**
+     * Adds the next page of projects to the end of the list
+     */
+    fun append(page: List<ProjectSummary>) = differ.append(page)
+
+    /**
+     * Drops the list waiting to be shown, if there is one
+     */
+    fun cancelUpdate() = differ.cancel()
+
+    override fun getItemId(position: Int): Long = differ.itemId(position)
+
     override fun getItemCount(): Int {
         return projects.size
     }
 }
 
-data class ProjectClick(var project: Project, var projectCard: View)
+data class ProjectClick(var project: ProjectSummary, var projectCard: View)
 
 class ViewHolder(var card: View) : RecyclerView.ViewHolder(card) {
     val name: TextView = itemView.project_name
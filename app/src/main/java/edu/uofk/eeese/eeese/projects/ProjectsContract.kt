@@ -12,12 +12,13 @@ package edu.uofk.eeese.eeese.projects
 
 import edu.uofk.eeese.eeese.BasePresenter
 import edu.uofk.eeese.eeese.BaseView
-import edu.uofk.eeese.eeese.data.Project
 import edu.uofk.eeese.eeese.data.ProjectCategory
+import edu.uofk.eeese.eeese.data.ProjectSummary
 
 interface ProjectsContract {
     interface View : BaseView<Presenter> {
-        fun showProjects(projects: List<Project>): Unit
+        fun showProjects(projects: List<ProjectSummary>): Unit
+        fun showMoreProjects(projects: List<ProjectSummary>): Unit
         fun showProjectDetails(projectId: String): Unit
         fun setLoadingIndicator(visibility: Boolean): Unit
         fun showNoProjects(): Unit
@@ -27,7 +28,9 @@ interface ProjectsContract {
     interface Presenter : BasePresenter {
         fun loadProjects(force: Boolean): Unit
 
-        fun openProjectDetails(project: Project): Unit
+        fun loadMoreProjects(): Unit
+
+        fun openProjectDetails(project: ProjectSummary): Unit
 
         fun getCategory(): ProjectCategory
     }
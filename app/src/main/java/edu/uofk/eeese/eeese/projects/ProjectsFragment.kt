@@ -21,9 +21,10 @@ import android.view.ViewGroup
 import com.transitionseverywhere.TransitionManager
 import edu.uofk.eeese.eeese.EEESEapp
 import edu.uofk.eeese.eeese.R
-import edu.uofk.eeese.eeese.data.Project
+import edu.uofk.eeese.eeese.data.ProjectSummary
 import edu.uofk.eeese.eeese.data.ProjectCategory
 import edu.uofk.eeese.eeese.projects.ProjectsFragment.OnProjectSelectedListener
+import edu.uofk.eeese.eeese.util.LoadMoreScrollListener
 import edu.uofk.eeese.eeese.util.OffsetItemDecorator
 import io.reactivex.disposables.Disposable
 import io.reactivex.disposables.Disposables
@@ -117,6 +118,10 @@ class ProjectsFragment : Fragment(), ProjectsContract.View {
                 resources.getDimensionPixelSize(R.dimen.project_margin_vertical),
                 resources.getDimensionPixelSize(R.dimen.project_margin_horizontal),
                 numberOfColumns))
+        projects_list.addOnScrollListener(LoadMoreScrollListener(
+                resources.getInteger(R.integer.load_more_threshold)) {
+            projectsPresenter.loadMoreProjects()
+        })
 
 
         reload_button.setOnClickListener { reloadProjects() }
@@ -142,6 +147,7 @@ class ProjectsFragment : Fragment(), ProjectsContract.View {
     override fun onPause() {
         super.onPause()
         projectsPresenter.unsubscribe()
+        projectsAdapter.cancelUpdate()
         projectClicks.dispose()
     }
 
@@ -150,12 +156,8 @@ class ProjectsFragment : Fragment(), ProjectsContract.View {
         mListener = null
     }
 
-    override fun showProjects(projects: List<Project>) {
-        projectsAdapter = ProjectsAdapter(projects)
-        projectClicks.dispose()
-        registerProjectClicks()
-
-        projects_list.swapAdapter(projectsAdapter, false)
+    override fun showProjects(projects: List<ProjectSummary>) {
+        projectsAdapter.update(projects)
         if (projects_list.visibility != View.VISIBLE) {
             TransitionManager.beginDelayedTransition(swipe_refresh)
         }
@@ -163,6 +165,10 @@ class ProjectsFragment : Fragment(), ProjectsContract.View {
         error_view.visibility = View.GONE
     }
 
+    override fun showMoreProjects(projects: List<ProjectSummary>) {
+        projectsAdapter.append(projects)
+    }
+
     override fun showProjectDetails(projectId: String) {
         mListener!!.onProjectSelected(projectId, selectedProject!!)
     }
@@ -14,7 +14,8 @@ import dagger.Module;
 import dagger.Provides;
 import edu.uofk.eeese.eeese.data.Project;
 import edu.uofk.eeese.eeese.data.ProjectCategory;
-import edu.uofk.eeese.eeese.data.source.Repository;
+import edu.uofk.eeese.eeese.data.ProjectSummary;
+import edu.uofk.eeese.eeese.data.source.PagedRepository;
 import edu.uofk.eeese.eeese.di.scopes.FragmentScope;
 
 @Module
@@ -35,7 +36,7 @@ public class ProjectsModule {
 
     @Provides
     @FragmentScope
-    ProjectsContract.Presenter providePresenter(Repository<Project> source,
+    ProjectsContract.Presenter providePresenter(PagedRepository<Project, ProjectSummary> source,
                                                 ProjectsContract.View view) {
         return new ProjectsPresenter(source, view, category);
     }
@@ -12,20 +12,37 @@ package edu.uofk.eeese.eeese.projects
 
 import edu.uofk.eeese.eeese.data.Project
 import edu.uofk.eeese.eeese.data.ProjectCategory
+import edu.uofk.eeese.eeese.data.ProjectSummary
 import edu.uofk.eeese.eeese.data.source.ProjectWithCategory
-import edu.uofk.eeese.eeese.data.source.Repository
+import edu.uofk.eeese.eeese.data.source.PagedRepository
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.disposables.Disposable
+import io.reactivex.disposables.Disposables
 import io.reactivex.schedulers.Schedulers
 import javax.inject.Inject
 
 
 class ProjectsPresenter @Inject
-constructor(private val source: Repository<Project>,
+constructor(private val source: PagedRepository<Project, ProjectSummary>,
             private val view: ProjectsContract.View,
             private val category: ProjectCategory) : ProjectsContract.Presenter {
 
+    companion object {
+        private const val PAGE_SIZE = 30
+    }
+
     private val subscriptions: CompositeDisposable = CompositeDisposable()
+    // The next page while it is loading
+    private val morePages: CompositeDisposable = CompositeDisposable()
+    // The projects of every page loaded so far, re-queried whenever they change
+    private var loaded: Disposable = Disposables.disposed()
+
+    private var lastProject: ProjectSummary? = null
+    private var loadingMore = false
+    private var allLoaded = false
+    // How many rows the list shows, to tell whether a reload grew
+    private var loadedCount = 0
 
     override fun getCategory(): ProjectCategory {
         return category
@@ -37,18 +54,30 @@ constructor(private val source: Repository<Project>,
             val sync = source.sync().subscribe()
             subscriptions.add(sync)
         }
-        val subscription = source.get(ProjectWithCategory(category))
+        observeLoaded(lastProject)
+    }
+
+    /**
+     * Observes the projects of the pages up to [through], or the first page if it is null,
+     * so coming back to the list or a change keeps the pages loaded so far
+     */
+    private fun observeLoaded(through: ProjectSummary?) {
+        val spec = ProjectWithCategory(category)
+        subscriptions.remove(loaded)
+        loaded = (if (through == null) source.getPage(spec, null, PAGE_SIZE)
+                  else source.getThrough(spec, through))
                 .subscribeOn(Schedulers.io())
-                // sort by name
-                .map({ projects ->
-                    projects.toList().sortedBy { it.name }
-                })
-                .subscribeOn(Schedulers.computation())
                 .observeOn(AndroidSchedulers.mainThread())
                 .doOnEach { view.setLoadingIndicator(false) }
                 .subscribe(
                         // OnSuccess
                         {
+                            lastProject = it.lastOrNull()
+                            // Once a short page showed every row is loaded, only a reload that
+                            // grew, as after a sync, is worth another page query
+                            if (through == null) allLoaded = it.size < PAGE_SIZE
+                            else if (it.size > loadedCount) allLoaded = false
+                            loadedCount = it.size
                             if (it.isNotEmpty()) view.showProjects(it)
                             else view.showNoProjects()
                         },
@@ -56,10 +85,39 @@ constructor(private val source: Repository<Project>,
                         {
                             view.showConnectionError()
                         })
-        subscriptions.add(subscription)
+        subscriptions.add(loaded)
+    }
+
+    override fun loadMoreProjects() {
+        val after = lastProject
+        if (loadingMore || allLoaded || after == null) {
+            return
+        }
+        loadingMore = true
+        val subscription = source.getPage(ProjectWithCategory(category), after, PAGE_SIZE)
+                .take(1)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        // OnSuccess
+                        {
+                            loadingMore = false
+                            allLoaded = it.size < PAGE_SIZE
+                            loadedCount += it.size
+                            if (it.isNotEmpty()) {
+                                view.showMoreProjects(it)
+                                observeLoaded(it.last())
+                            }
+                        },
+                        // OnError
+                        {
+                            loadingMore = false
+                            view.showConnectionError()
+                        })
+        morePages.add(subscription)
     }
 
-    override fun openProjectDetails(project: Project) {
+    override fun openProjectDetails(project: ProjectSummary) {
         view.showProjectDetails(project.id)
     }
 
@@ -67,5 +125,7 @@ constructor(private val source: Repository<Project>,
 
     override fun unsubscribe() {
         subscriptions.clear()
+        morePages.clear()
+        loadingMore = false
     }
 }
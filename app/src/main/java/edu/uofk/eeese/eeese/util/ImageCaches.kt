@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.util
+
+import android.app.ActivityManager
+import android.content.Context
+import android.content.pm.ApplicationInfo
+import java.io.File
+
+/**
+ * Sizes the image caches by the memory class of the device, the heap size it gives the app,
+ * so that devices with less memory keep fewer images. Picasso already sizes its memory cache
+ * by it, so only the HTTP disk cache is sized here
+ */
+object ImageCaches {
+
+    private const val MEGABYTE = 1024 * 1024
+    // The disk cache gets a megabyte for every megabyte of the heap, within these bounds
+    private const val MIN_DISK_CACHE_SIZE = 5L * MEGABYTE
+    private const val MAX_DISK_CACHE_SIZE = 50L * MEGABYTE
+    // and to at most this share of the free space
+    private const val DISK_CACHE_FREE_SPACE_DIVISOR = 50
+
+    /**
+     * The heap the app gets in megabytes, the large one if it asked for it
+     */
+    @JvmStatic
+    fun memoryClass(context: Context): Int {
+        val activityManager =
+                context.getSystemService(Context.ACTIVITY_SERVICE) as ActivityManager
+        val largeHeap = (context.applicationInfo.flags and ApplicationInfo.FLAG_LARGE_HEAP) != 0
+        return if (largeHeap) activityManager.largeMemoryClass else activityManager.memoryClass
+    }
+
+    /**
+     * The size of the HTTP responses, images included, cached in [directory], in bytes
+     */
+    @JvmStatic
+    fun diskCacheSize(context: Context, directory: File): Long {
+        val size = memoryClass(context).toLong() * MEGABYTE
+        val free = directory.usableSpace / DISK_CACHE_FREE_SPACE_DIVISOR
+        return Math.max(MIN_DISK_CACHE_SIZE, Math.min(Math.min(size, free), MAX_DISK_CACHE_SIZE))
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.util
+
+import android.support.v4.os.TraceCompat
+import android.support.v7.util.DiffUtil
+import android.support.v7.widget.RecyclerView
+import io.reactivex.Single
+import io.reactivex.android.schedulers.AndroidSchedulers
+import io.reactivex.disposables.Disposable
+import io.reactivex.disposables.Disposables
+import io.reactivex.schedulers.Schedulers
+
+/**
+ * Holds the items of [adapter] and moves it to each new list with the fewest changes,
+ * found off the main thread, so the items that did not change are neither rebound nor lose
+ * their place. Items are the same item when their [id]s are equal, and changed when they are
+ * not equal. When lists are submitted faster than they are diffed only the last is shown.
+ *
+ * The lists are never modified, so a list can be diffed while the next page is appended.
+ * All the methods should be called on the main thread
+ */
+class ListDiffer<T>(private val adapter: RecyclerView.Adapter<*>,
+                    private val id: (T) -> String) {
+
+    companion object {
+        // The main thread part of an update, shown in systrace
+        private const val UPDATE_SECTION = "ListDiffer.update"
+    }
+
+    /**
+     * The items the adapter shows
+     */
+    var items: List<T> = emptyList()
+        private set
+
+    // The last list submitted, while it is still being diffed
+    private var pending: List<T>? = null
+    private var diff: Disposable = Disposables.disposed()
+
+    // The stable ids of the items, unlike hash codes no two items ever share one
+    private var ids = HashMap<String, Long>()
+    private var nextId = 0L
+
+    /**
+     * A stable id of the item at [position], for [RecyclerView.Adapter.getItemId].
+     * An item keeps its id for as long as it stays in the list
+     */
+    fun itemId(position: Int): Long = ids.getValue(id(items[position]))
+
+    /**
+     * Shows [list] instead of the current items, once it is diffed against them
+     */
+    fun submit(list: List<T>) {
+        diff.dispose()
+        val old = items
+        if (old.isEmpty() || list.isEmpty()) {
+            // Everything is inserted or removed, there is nothing to diff
+            pending = null
+            update(list) {
+                if (old.isNotEmpty()) adapter.notifyItemRangeRemoved(0, old.size)
+                if (list.isNotEmpty()) adapter.notifyItemRangeInserted(0, list.size)
+            }
+            return
+        }
+        pending = list
+        diff = Single.fromCallable { DiffUtil.calculateDiff(Callback(old, list)) }
+                .subscribeOn(Schedulers.computation())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe { result ->
+                    pending = null
+                    update(list) { result.dispatchUpdatesTo(adapter) }
+                }
+    }
+
+    /**
+     * Adds the next page to the end of the list, or of the list being diffed if there is one
+     */
+    fun append(page: List<T>) {
+        val target = pending
+        if (target != null) {
+            submit(target + page)
+            return
+        }
+        val start = items.size
+        update(items + page) { adapter.notifyItemRangeInserted(start, page.size) }
+    }
+
+    /**
+     * Drops the list being diffed, if there is one
+     */
+    fun cancel() {
+        diff.dispose()
+        pending = null
+    }
+
+    private inline fun update(list: List<T>, notify: () -> Unit) {
+        TraceCompat.beginSection(UPDATE_SECTION)
+        try {
+            items = list
+            ids = stableIds(list)
+            notify()
+        } finally {
+            TraceCompat.endSection()
+        }
+    }
+
+    /**
+     * The ids of the items of [list], the ones already shown keep theirs. Only the ids of the
+     * items shown are kept, so they don't pile up as the list is refreshed
+     */
+    private fun stableIds(list: List<T>): HashMap<String, Long> {
+        val stable = HashMap<String, Long>(list.size * 2)
+        for (item in list) {
+            val key = id(item)
+            stable.put(key, ids[key] ?: nextId++)
+        }
+        return stable
+    }
+
+    private inner class Callback(private val old: List<T>,
+                                 private val new: List<T>) : DiffUtil.Callback() {
+        override fun getOldListSize() = old.size
+
+        override fun getNewListSize() = new.size
+
+        override fun areItemsTheSame(oldPosition: Int, newPosition: Int) =
+                id(old[oldPosition]) == id(new[newPosition])
+
+        override fun areContentsTheSame(oldPosition: Int, newPosition: Int) =
+                old[oldPosition] == new[newPosition]
+    }
+}
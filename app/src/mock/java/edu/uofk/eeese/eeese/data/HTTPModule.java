@@ -12,10 +12,13 @@ package edu.uofk.eeese.eeese.data;
 
 import android.content.Context;
 
+import com.jakewharton.picasso.OkHttp3Downloader;
 import com.readystatesoftware.chuck.ChuckInterceptor;
+import com.squareup.picasso.Picasso;
 
 import dagger.Module;
 import dagger.Provides;
+import edu.uofk.eeese.eeese.data.backend.LocalBackendInterceptor;
 import edu.uofk.eeese.eeese.di.scopes.ApplicationScope;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
@@ -24,13 +27,31 @@ import okhttp3.logging.HttpLoggingInterceptor;
 public class HTTPModule {
     @Provides
     @ApplicationScope
-    OkHttpClient provideHttpClient(Context context) {
+    LocalBackendInterceptor provideLocalBackend() {
+        return new LocalBackendInterceptor();
+    }
+
+    @Provides
+    @ApplicationScope
+    OkHttpClient provideHttpClient(Context context, LocalBackendInterceptor localBackend) {
         HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
         loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
 
         return new OkHttpClient.Builder()
                 .addInterceptor(loggingInterceptor)
                 .addInterceptor(new ChuckInterceptor(context))
+                // answers every request, so it has to be the last one
+                .addInterceptor(localBackend)
+                .build();
+    }
+
+    @Provides
+    @ApplicationScope
+    Picasso providePicassoInstance(Context context, OkHttpClient httpClient) {
+        return new Picasso.Builder(context)
+                .downloader(new OkHttp3Downloader(httpClient))
+                .indicatorsEnabled(true)
+                .loggingEnabled(true)
                 .build();
     }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.backend;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import org.joda.time.DateTime;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * A stand-in for the backend that answers the API requests from memory, so syncing,
+ * including the delta sync, can be exercised offline.
+ * Every change made through it gets a new version, which is what the watermarks refer to.
+ */
+public class LocalBackendInterceptor implements Interceptor {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final Gson gson = new Gson();
+    private final Table projects = new Table();
+    private final Table events = new Table();
+    private long version = 0;
+
+    public LocalBackendInterceptor() {
+        String[] categories = {
+                ServerContract.Projects.INSTANCE.getCATEGORY_POWER(),
+                ServerContract.Projects.INSTANCE.getCATEGORY_TELECOM(),
+                ServerContract.Projects.INSTANCE.getCATEGORY_SOFTWARE(),
+                ServerContract.Projects.INSTANCE.getCATEGORY_ELECTRONICS_CONTROL()
+        };
+        for (String category : categories) {
+            for (int i = 1; i <= 5; ++i) {
+                putProject(project(category + "-" + i, "Project " + i, "Head " + i, category));
+            }
+        }
+        DateTime start = DateTime.now().withTimeAtStartOfDay();
+        for (int i = 0; i < 10; ++i) {
+            putEvent(event(String.valueOf(i), "Event " + i,
+                    start.plusDays(i), start.plusDays(i).plusHours(2)));
+        }
+    }
+
+    public static JsonObject project(String id, String name, String head, String category) {
+        JsonObject project = new JsonObject();
+        project.addProperty("id", id);
+        project.addProperty("name", name);
+        project.addProperty("head", head);
+        project.addProperty("desc", "Project description");
+        project.addProperty("category", category);
+        JsonArray prerequisites = new JsonArray();
+        prerequisites.add("Prereq1");
+        prerequisites.add("Prereq2");
+        project.add("prereq", prerequisites);
+        return project;
+    }
+
+    public static JsonObject event(String id, String name, DateTime start, DateTime end) {
+        JsonObject event = new JsonObject();
+        event.addProperty("id", id);
+        event.addProperty("name", name);
+        event.addProperty("desc", "Event description");
+        event.addProperty("location", "32.5599,15.5007");
+        event.addProperty("start", start.toString());
+        event.addProperty("end", end.toString());
+        return event;
+    }
+
+    public synchronized void putProject(JsonObject project) {
+        projects.put(project, ++version);
+    }
+
+    public synchronized void deleteProject(String id) {
+        projects.delete(id, ++version);
+    }
+
+    public synchronized void putEvent(JsonObject event) {
+        events.put(event, ++version);
+    }
+
+    public synchronized void deleteEvent(String id) {
+        events.delete(id, ++version);
+    }
+
+    @Override
+    public synchronized Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        HttpUrl url = request.url();
+        List<String> path = url.pathSegments();
+        String since = url.queryParameter("since");
+
+        String body = null;
+        if (path.size() == 1 && path.get(0).equals("projects")) {
+            body = gson.toJson(projects.all());
+        } else if (path.size() == 1 && path.get(0).equals("events")) {
+            body = gson.toJson(events.all());
+        } else if (path.size() == 2 && path.get(0).equals("project")) {
+            body = gson.toJson(projects.rows.get(path.get(1)));
+        } else if (path.size() == 2 && path.get(0).equals("event")) {
+            body = gson.toJson(events.rows.get(path.get(1)));
+        } else if (path.size() == 2 && path.get(0).equals("projects")) {
+            body = gson.toJson(projects.withCategory(path.get(1)));
+        } else if (path.size() == 2 && path.get(0).equals("changes")) {
+            if (path.get(1).equals("projects")) {
+                body = gson.toJson(projects.changes(since, version));
+            } else if (path.get(1).equals("events")) {
+                body = gson.toJson(events.changes(since, version));
+            }
+        }
+
+        Response.Builder response = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1);
+        if (body != null && !body.equals("null")) {
+            return response.code(200).message("OK")
+                    .body(ResponseBody.create(JSON, body))
+                    .build();
+        } else {
+            return response.code(404).message("Not Found")
+                    .body(ResponseBody.create(JSON, "{}"))
+                    .build();
+        }
+    }
+
+    private static class Table {
+        private final Map<String, JsonObject> rows = new LinkedHashMap<>();
+        private final Map<String, Long> versions = new LinkedHashMap<>();
+        private final Map<String, Long> deletions = new LinkedHashMap<>();
+
+        void put(JsonObject row, long version) {
+            String id = row.get("id").getAsString();
+            rows.put(id, row);
+            versions.put(id, version);
+            deletions.remove(id);
+        }
+
+        void delete(String id, long version) {
+            if (rows.remove(id) != null) {
+                versions.remove(id);
+                deletions.put(id, version);
+            }
+        }
+
+        JsonArray all() {
+            JsonArray all = new JsonArray();
+            for (JsonObject row : rows.values()) {
+                all.add(row);
+            }
+            return all;
+        }
+
+        JsonArray withCategory(String category) {
+            JsonArray matching = new JsonArray();
+            for (JsonObject row : rows.values()) {
+                if (row.get("category").getAsString().equals(category)) {
+                    matching.add(row);
+                }
+            }
+            return matching;
+        }
+
+        JsonObject changes(String since, long watermark) {
+            long from = since != null ? Long.parseLong(since) : 0;
+            JsonArray changed = new JsonArray();
+            for (Map.Entry<String, Long> entry : versions.entrySet()) {
+                if (entry.getValue() > from) {
+                    changed.add(rows.get(entry.getKey()));
+                }
+            }
+            JsonArray deleted = new JsonArray();
+            if (since != null) {
+                for (Map.Entry<String, Long> entry : deletions.entrySet()) {
+                    if (entry.getValue() > from) {
+                        deleted.add(entry.getKey());
+                    }
+                }
+            }
+            JsonObject changes = new JsonObject();
+            changes.addProperty("watermark", String.valueOf(watermark));
+            changes.add("changed", changed);
+            changes.add("deleted", deleted);
+            return changes;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.util.concurrent.TimeUnit;
 import dagger.Module;
 import dagger.Provides;
 import edu.uofk.eeese.eeese.di.scopes.ApplicationScope;
+import edu.uofk.eeese.eeese.util.ImageCaches;
 import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 
@@ -32,8 +33,9 @@ public class HTTPModule {
         return new OkHttpClient.Builder()
                 .addInterceptor(new ChuckInterceptor(context))
                 .connectTimeout(2, TimeUnit.SECONDS)
-                // 2 MB cache
-                .cache(new Cache(context.getCacheDir(), 2_000_000))
+                // Sized by the memory class, as it mostly holds the event images
+                .cache(new Cache(context.getCacheDir(),
+                        ImageCaches.diskCacheSize(context, context.getCacheDir())))
                 .build();
     }
 
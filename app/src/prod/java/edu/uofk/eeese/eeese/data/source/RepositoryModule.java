@@ -16,6 +16,7 @@ import dagger.Module;
 import dagger.Provides;
 import edu.uofk.eeese.eeese.data.Event;
 import edu.uofk.eeese.eeese.data.Project;
+import edu.uofk.eeese.eeese.data.ProjectSummary;
 import edu.uofk.eeese.eeese.data.sync.SyncManager;
 import edu.uofk.eeese.eeese.di.scopes.ApplicationScope;
 
@@ -24,13 +25,38 @@ public class RepositoryModule {
 
     @Provides
     @ApplicationScope
-    Repository<Event> provideEventsRepository(Context context, SyncManager syncManager) {
+    EventsRepository provideEventsRepository(Context context, SyncManager syncManager) {
         return new EventsRepository(context, syncManager);
     }
 
+    @Provides
+    Repository<Event> provideEvents(EventsRepository repository) {
+        return repository;
+    }
+
+    @Provides
+    PagedRepository<Event, Event> provideEventPages(EventsRepository repository) {
+        return repository;
+    }
+
     @Provides
     @ApplicationScope
-    Repository<Project> provideProjectsRepository(Context context, SyncManager syncManager) {
+    ProjectsRepository provideProjectsRepository(Context context, SyncManager syncManager) {
         return new ProjectsRepository(context, syncManager);
     }
+
+    @Provides
+    Repository<Project> provideProjects(ProjectsRepository repository) {
+        return repository;
+    }
+
+    @Provides
+    SummaryRepository<Project, ProjectSummary> provideProjectSummaries(ProjectsRepository repository) {
+        return repository;
+    }
+
+    @Provides
+    PagedRepository<Project, ProjectSummary> provideProjectPages(ProjectsRepository repository) {
+        return repository;
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data;
+
+import android.database.Cursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.uofk.eeese.eeese.data.DataContract.ProjectEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CursorMapperTest {
+
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int CATEGORY = 2;
+
+    @Mock
+    private Cursor cursor;
+
+    @Before
+    public void setupCursor() {
+        // A partial projection, with the id, name and category columns only
+        when(cursor.getColumnIndex(anyString())).thenReturn(-1);
+        when(cursor.getColumnIndex(ProjectEntry.COLUMN_PROJECT_ID)).thenReturn(ID);
+        when(cursor.getColumnIndex(ProjectEntry.COLUMN_PROJECT_NAME)).thenReturn(NAME);
+        when(cursor.getColumnIndex(ProjectEntry.COLUMN_PROJECT_CATEGORY)).thenReturn(CATEGORY);
+        when(cursor.getCount()).thenReturn(3);
+        when(cursor.moveToNext()).thenReturn(true, true, true, false);
+        when(cursor.getString(ID)).thenReturn("id");
+        when(cursor.getString(NAME)).thenReturn("name");
+        when(cursor.getInt(CATEGORY)).thenReturn(DataUtils.Projects.CATEGORY_POWER);
+    }
+
+    @Test
+    public void resolvesEveryColumnOnce_forAllTheRows() {
+        List<Project> projects = new DataUtils.Projects.Mapper(cursor).readAll();
+
+        assertEquals(3, projects.size());
+        verify(cursor, times(1)).getColumnIndex(ProjectEntry.COLUMN_PROJECT_ID);
+        verify(cursor, times(1)).getColumnIndex(ProjectEntry.COLUMN_PROJECT_NAME);
+        verify(cursor, times(1)).getColumnIndex(ProjectEntry.COLUMN_PROJECT_CATEGORY);
+        verify(cursor).close();
+    }
+
+    @Test
+    public void reportsTheMissingColumns_andReadsThemAsNull() {
+        DataUtils.Projects.Mapper mapper = new DataUtils.Projects.Mapper(cursor);
+
+        assertEquals(Arrays.asList(ProjectEntry.COLUMN_PROJECT_HEAD,
+                ProjectEntry.COLUMN_PROJECT_DESC,
+                ProjectEntry.COLUMN_PROJECT_PREREQS),
+                mapper.getMissingColumns());
+
+        Project project = mapper.readAll().get(0);
+        assertEquals("id", project.getId());
+        assertEquals(ProjectCategory.POWER, project.getCategory());
+        assertNull(project.getHead());
+        assertNull(project.getDesc());
+        assertEquals(Collections.emptyList(), project.getPrerequisites());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsToRead_withoutARequiredColumn() {
+        when(cursor.getColumnIndex(ProjectEntry.COLUMN_PROJECT_NAME)).thenReturn(-1);
+        DataUtils.Projects.Mapper mapper = new DataUtils.Projects.Mapper(cursor);
+        assertTrue(mapper.getMissingColumns().contains(ProjectEntry.COLUMN_PROJECT_NAME));
+
+        mapper.readAll();
+    }
+
+    @Test
+    public void readsNothing_fromAnEmptyCursor() {
+        when(cursor.moveToFirst()).thenReturn(false);
+
+        assertNull(new DataUtils.Projects.Mapper(cursor).readFirst());
+        verify(cursor).close();
+        verify(cursor, times(0)).getString(anyInt());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.TestScheduler;
+import kotlin.Unit;
+import kotlin.jvm.functions.Function1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NotificationCoalescerTest {
+
+    private static final long DEBOUNCE = 50;
+
+    private TestScheduler scheduler;
+    private List<String> sent;
+    private NotificationCoalescer<String> coalescer;
+
+    @Before
+    public void setupCoalescer() {
+        scheduler = new TestScheduler();
+        sent = new ArrayList<>();
+        coalescer = new NotificationCoalescer<>(DEBOUNCE, scheduler,
+                new Function1<String, Unit>() {
+                    @Override
+                    public Unit invoke(String key) {
+                        sent.add(key);
+                        return Unit.INSTANCE;
+                    }
+                });
+    }
+
+    @Test
+    public void sendsEveryKeyOnce_whenTheBatchEnds() {
+        coalescer.beginBatch();
+        for (int i = 0; i < 100; ++i) {
+            coalescer.notifyChange("projects");
+            coalescer.notifyChange("events");
+        }
+        assertTrue(sent.isEmpty());
+
+        coalescer.endBatch();
+
+        assertEquals(Arrays.asList("projects", "events"), sent);
+        assertEquals(200, coalescer.getRequested());
+        assertEquals(198, coalescer.getSuppressed());
+    }
+
+    @Test
+    public void holdsNestedBatches_untilTheOutermostOneEnds() {
+        coalescer.beginBatch();
+        coalescer.beginBatch();
+        coalescer.notifyChange("projects");
+        coalescer.endBatch();
+        assertTrue(sent.isEmpty());
+
+        coalescer.endBatch();
+
+        assertEquals(Arrays.asList("projects"), sent);
+    }
+
+    @Test
+    public void sendsNothing_whenTheBatchIsCancelled() {
+        coalescer.beginBatch();
+        coalescer.notifyChange("projects");
+        coalescer.cancelBatch();
+        coalescer.endBatch();
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS);
+
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void holdsNotifications_forTheDebounceWindow() {
+        coalescer.notifyChange("projects");
+        scheduler.advanceTimeBy(DEBOUNCE / 2, TimeUnit.MILLISECONDS);
+        coalescer.notifyChange("projects");
+        assertTrue(sent.isEmpty());
+
+        scheduler.advanceTimeBy(DEBOUNCE, TimeUnit.MILLISECONDS);
+
+        assertEquals(Arrays.asList("projects"), sent);
+        assertEquals(1, coalescer.getSuppressed());
+    }
+
+    @Test
+    public void sendsRightAway_withoutADebounceWindow() {
+        coalescer = new NotificationCoalescer<>(0, scheduler,
+                new Function1<String, Unit>() {
+                    @Override
+                    public Unit invoke(String key) {
+                        sent.add(key);
+                        return Unit.INSTANCE;
+                    }
+                });
+
+        coalescer.notifyChange("projects");
+        coalescer.notifyChange("projects");
+
+        assertEquals(Arrays.asList("projects", "projects"), sent);
+        assertEquals(0, coalescer.getSuppressed());
+    }
+
+    @Test
+    public void sendsTheCollapsedKeys_whenTheBatchEnds() {
+        coalescer = new NotificationCoalescer<>(DEBOUNCE, scheduler,
+                new Function1<Collection<? extends String>, Collection<String>>() {
+                    @Override
+                    public Collection<String> invoke(Collection<? extends String> keys) {
+                        return keys.size() > 2
+                                ? Collections.singletonList("project")
+                                : new ArrayList<>(keys);
+                    }
+                },
+                new Function1<String, Unit>() {
+                    @Override
+                    public Unit invoke(String key) {
+                        sent.add(key);
+                        return Unit.INSTANCE;
+                    }
+                });
+
+        coalescer.beginBatch();
+        for (int i = 0; i < 10; ++i) {
+            coalescer.notifyChange("project/" + i);
+        }
+        coalescer.endBatch();
+
+        assertEquals(Arrays.asList("project"), sent);
+        assertEquals(9, coalescer.getSuppressed());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.uofk.eeese.eeese.data.DataUtils.Projects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PrerequisitesEncodingTest {
+
+    @Test
+    public void decodesWhatItEncodes_evenWithSeparatorsInThePrerequisites() {
+        List<String> prerequisites = Arrays.asList("Circuits, Part 1", "Signals: Basics", "");
+        assertEquals(prerequisites,
+                Projects.INSTANCE.prerequisites(Projects.INSTANCE.prerequisites(prerequisites)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAPrerequisiteContainingThePrerequisiteSeparator() {
+        Projects.INSTANCE.prerequisites(Arrays.asList("Circuits",
+                "Signals" + Projects.PREREQUISITE_SEPARATOR + "Systems"));
+    }
+
+    @Test
+    public void decodesInThePositionsOrder_notTheJoinedOrder() {
+        String encoded = "1" + Projects.POSITION_SEPARATOR + "Second" +
+                Projects.PREREQUISITE_SEPARATOR +
+                "0" + Projects.POSITION_SEPARATOR + "First";
+        assertEquals(Arrays.asList("First", "Second"), Projects.INSTANCE.prerequisites(encoded));
+    }
+
+    @Test
+    public void decodesAnEmptyEncodingToAnEmptyList() {
+        assertEquals(Collections.emptyList(),
+                Projects.INSTANCE.prerequisites(Projects.INSTANCE.prerequisites(
+                        Collections.<String>emptyList())));
+    }
+
+    @Test
+    public void decodesToTheInternedInstances() {
+        final String interned = "Circuits";
+        List<String> prerequisites = Projects.INSTANCE.prerequisites(
+                Projects.INSTANCE.prerequisites(Collections.singletonList(new String(interned))),
+                name -> interned);
+        assertSame(interned, prerequisites.get(0));
+    }
+}
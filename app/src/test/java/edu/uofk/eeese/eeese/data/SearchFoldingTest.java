@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import edu.uofk.eeese.eeese.data.DataUtils.Search;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchFoldingTest {
+
+    @Test
+    public void foldsTheFormsOfAlef_andDropsTheDiacritics() {
+        assertEquals("احمد", Search.INSTANCE.fold("أَحْمَد"));
+    }
+
+    @Test
+    public void foldsTaaMarbuta_andAlefMaqsura() {
+        assertEquals("مدرسه", Search.INSTANCE.fold("مدرسة"));
+        assertEquals("مستشفي", Search.INSTANCE.fold("مستشفى"));
+    }
+
+    @Test
+    public void leavesLatinTextAsItIs() {
+        assertEquals("Power Systems", Search.INSTANCE.fold("Power Systems"));
+    }
+
+    @Test
+    public void splitsTheTermsOnArabicPunctuation_andDropsTheQueryOperators() {
+        assertEquals(Arrays.asList("قوي", "power", "OR", "signals"),
+                Search.INSTANCE.terms("قوى، power* \"OR\" -signals"));
+    }
+
+    @Test
+    public void splitsAHyphenatedTerm_likeTheIndexedText() {
+        assertEquals(Arrays.asList("e", "learning"), Search.INSTANCE.terms("e-learning"));
+    }
+
+    @Test
+    public void matchesEveryTermAsAPrefix() {
+        assertEquals("power* sys*",
+                Search.INSTANCE.match(Arrays.asList("power", "sys"), null));
+        assertEquals("name:power* name:sys*",
+                Search.INSTANCE.match(Arrays.asList("power", "sys"), "name"));
+    }
+
+    @Test
+    public void matchesNothingWithoutTerms() {
+        assertEquals(Collections.emptyList(), Search.INSTANCE.terms(" * \"\" "));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.source;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ComposedSpecificationTest {
+
+    private final ContentProviderSpecification a = new RowWithValue("a", "1");
+    private final ContentProviderSpecification b = new RowWithValue("b", "2");
+    private final ContentProviderSpecification c = new RowWithValue("c", "3");
+
+    @Test
+    public void joinsTheSelections_andTheirArgumentsInOrder() {
+        ContentProviderSelection selection =
+                new AllOf(a, new AnyOf(b, new Not(c))).toSelectionQuery();
+        assertEquals("(a = ?) AND ((b = ?) OR (NOT (c = ?)))", selection.getSelection());
+        assertArrayEquals(new String[]{"1", "2", "3"}, selection.getSelectionArgs());
+    }
+
+    @Test
+    public void treatsSpecificationsWithoutASelectionAsMatchingEveryRow() {
+        assertEquals("a = ?",
+                new AllOf(AnyRow.INSTANCE, a).toSelectionQuery().getSelection());
+        assertNull(new AnyOf(AnyRow.INSTANCE, a).toSelectionQuery().getSelection());
+        assertEquals("0", new Not(AnyRow.INSTANCE).toSelectionQuery().getSelection());
+    }
+
+    @Test
+    public void matchesNothing_withAnEmptyOrOrIn() {
+        assertEquals("0", new AnyOf().toSelectionQuery().getSelection());
+        assertEquals("0", new RowWithValueIn("a", Collections.<String>emptyList())
+                .toSelectionQuery().getSelection());
+    }
+
+    @Test
+    public void bindsEveryValueOfAnIn() {
+        ContentProviderSelection selection =
+                new RowWithValueIn("a", Arrays.asList("1", "2", "3")).toSelectionQuery();
+        assertEquals("a IN (?, ?, ?)", selection.getSelection());
+        assertArrayEquals(new String[]{"1", "2", "3"}, selection.getSelectionArgs());
+    }
+
+    @Test
+    public void keysetThrough_coversEveryPageUpToAndIncludingTheLastRow() {
+        KeysetThrough through = new KeysetThrough(a, "name", "id", "Name", "7");
+        ContentProviderSelection selection = through.toSelectionQuery();
+        assertEquals("(a = ?) AND name <= ? AND (name < ? OR id <= ?)",
+                selection.getSelection());
+        assertArrayEquals(new String[]{"1", "Name", "Name", "7"}, selection.getSelectionArgs());
+        assertEquals("name, id", through.orderBy());
+    }
+
+    @Test
+    public void boundsRangesOnTheGivenSidesOnly() {
+        assertEquals("a >= ? AND a < ?",
+                new RowInRange("a", "1", "2").toSelectionQuery().getSelection());
+        assertEquals("a > ?",
+                new RowInRange("a", "1", null, false, false).toSelectionQuery().getSelection());
+        assertEquals("a <= ?",
+                new RowInRange("a", null, "2", true, true).toSelectionQuery().getSelection());
+    }
+
+    @Test
+    public void ordersAndLimitsWithoutChangingTheSelection() {
+        OffsetPage page = new OffsetPage(
+                new Sorted(a, new Order("b", true), new Order("c")), 20, 40);
+        assertEquals("a = ?", page.toSelectionQuery().getSelection());
+        assertArrayEquals(new String[]{"1"}, page.toSelectionQuery().getSelectionArgs());
+        assertEquals("b DESC, c", page.orderBy());
+        assertEquals(20, page.limit());
+        assertEquals(40, page.offset());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.source;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QueryCacheTest {
+
+    private QueryCache<String, String> cache;
+
+    @Before
+    public void createCache() {
+        cache = new QueryCache<>(2);
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        assertNull(cache.get("a"));
+        cache.put("a", "A", cache.getGeneration());
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.get("a"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedResult() {
+        cache.put("a", "A", cache.getGeneration());
+        cache.put("b", "B", cache.getGeneration());
+        cache.get("a");
+        cache.put("c", "C", cache.getGeneration());
+
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void invalidatesOnlyTheMatchingResults() {
+        cache.put("projects", "P", cache.getGeneration());
+        cache.put("events", "E", cache.getGeneration());
+        cache.invalidate(key -> key.equals("projects"));
+
+        assertNull(cache.get("projects"));
+        assertEquals("E", cache.get("events"));
+    }
+
+    @Test
+    public void dropsResultsQueriedBeforeAnInvalidation() {
+        long generation = cache.getGeneration();
+        cache.invalidate(key -> true);
+        cache.put("a", "stale", generation);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.sync;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import kotlin.jvm.functions.Function1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyncDiffTest {
+
+    /**
+     * Items are "id:version" strings, so two items with the same id but different versions
+     * are the same item that was changed
+     */
+    private static final Function1<String, String> GET_ID = new Function1<String, String>() {
+        @Override
+        public String invoke(String item) {
+            return item.substring(0, item.indexOf(':'));
+        }
+    };
+
+    private static Map<String, String> byId(List<String> items) {
+        Map<String, String> map = new HashMap<>();
+        for (String item : items) {
+            map.put(GET_ID.invoke(item), item);
+        }
+        return map;
+    }
+
+    @Test
+    public void insertsEverything_whenThereAreNoLocalItems() {
+        SyncDiff<String, String> diff = SyncDiff.Companion.calculate(
+                Collections.<String>emptyList(), byId(Arrays.asList("1:a", "2:a")), GET_ID);
+
+        assertEquals(2, diff.getInsertions().size());
+        assertTrue(diff.getUpdates().isEmpty());
+        assertTrue(diff.getDeletions().isEmpty());
+    }
+
+    @Test
+    public void deletesEverything_whenThereAreNoRemoteItems() {
+        SyncDiff<String, String> diff = SyncDiff.Companion.calculate(
+                Arrays.asList("1:a", "2:a"), Collections.<String, String>emptyMap(), GET_ID);
+
+        assertTrue(diff.getInsertions().isEmpty());
+        assertTrue(diff.getUpdates().isEmpty());
+        assertEquals(Arrays.asList("1", "2"), diff.getDeletions());
+    }
+
+    @Test
+    public void insertsUpdatesAndDeletes_onlyWhatChanged() {
+        List<String> local = Arrays.asList("1:a", "2:a", "3:a");
+        List<String> remote = Arrays.asList("2:a", "3:b", "4:a");
+
+        SyncDiff<String, String> diff = SyncDiff.Companion.calculate(local, byId(remote), GET_ID);
+
+        assertEquals(Collections.singletonList("4:a"), diff.getInsertions());
+        assertEquals(Collections.singletonList("3:b"), diff.getUpdates());
+        assertEquals(Collections.singletonList("1"), diff.getDeletions());
+    }
+
+    @Test(timeout = 5000)
+    public void diffsLargeCollections_inBoundedTime() {
+        int n = 100_000;
+        List<String> local = new ArrayList<>(n);
+        List<String> remote = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            // a tenth of the items are local only, a tenth are remote only,
+            // and a tenth are changed
+            if (i % 10 != 0) local.add(i + ":a");
+            if (i % 10 != 1) remote.add(i + (i % 10 == 2 ? ":b" : ":a"));
+        }
+        Map<String, String> remoteById = byId(remote);
+
+        // The time bound is the test's timeout
+        SyncDiff<String, String> diff = SyncDiff.Companion.calculate(local, remoteById, GET_ID);
+
+        assertEquals(n / 10, diff.getInsertions().size());
+        assertEquals(n / 10, diff.getUpdates().size());
+        assertEquals(n / 10, diff.getDeletions().size());
+    }
+}
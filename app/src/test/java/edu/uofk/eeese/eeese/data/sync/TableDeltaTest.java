@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.data.sync;
+
+import com.google.gson.stream.JsonReader;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.uofk.eeese.eeese.data.DataUtils.RowHash;
+import edu.uofk.eeese.eeese.data.backend.ChangesReader;
+import kotlin.jvm.functions.Function0;
+import kotlin.jvm.functions.Function1;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class TableDeltaTest {
+
+    /**
+     * Items are "id:version" strings, hashed by their version
+     */
+    private static final Function1<String, String> GET_ID = new Function1<String, String>() {
+        @Override
+        public String invoke(String item) {
+            return item.substring(0, item.indexOf(':'));
+        }
+    };
+    private static final Function1<String, Long> HASH = new Function1<String, Long>() {
+        @Override
+        public Long invoke(String item) {
+            return (long) item.substring(item.indexOf(':') + 1).hashCode();
+        }
+    };
+
+    private final TableDelta<String> delta = new TableDelta<>(GET_ID, HASH);
+    private final Recorder out = new Recorder();
+
+    private static class Recorder implements TableChanges<String> {
+        final List<String> inserts = new ArrayList<>();
+        final List<String> updates = new ArrayList<>();
+        final List<String> deletes = new ArrayList<>();
+
+        @Override
+        public void insert(String item) {
+            inserts.add(item);
+        }
+
+        @Override
+        public void update(String item) {
+            updates.add(item);
+        }
+
+        @Override
+        public void delete(String id) {
+            deletes.add(id);
+        }
+    }
+
+    private static ChangesReader<String> changes(String json) {
+        return new ChangesReader<>(ResponseBody.create(null, json),
+                new Function1<JsonReader, String>() {
+                    @Override
+                    public String invoke(JsonReader reader) {
+                        try {
+                            return reader.nextString();
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+    }
+
+    private static Function0<Iterable<RowHash>> local(final String... items) {
+        return new Function0<Iterable<RowHash>>() {
+            @Override
+            public Iterable<RowHash> invoke() {
+                List<RowHash> hashes = new ArrayList<>();
+                for (String item : items) {
+                    hashes.add(new RowHash(GET_ID.invoke(item), HASH.invoke(item)));
+                }
+                return hashes;
+            }
+        };
+    }
+
+    private static Function0<Map<String, String>> catalog(final String... items) {
+        return new Function0<Map<String, String>>() {
+            @Override
+            public Map<String, String> invoke() {
+                Map<String, String> byId = new HashMap<>();
+                for (String item : items) {
+                    byId.put(GET_ID.invoke(item), item);
+                }
+                return byId;
+            }
+        };
+    }
+
+    private static final Function0<Map<String, String>> NO_CATALOG =
+            new Function0<Map<String, String>>() {
+                @Override
+                public Map<String, String> invoke() {
+                    fail("the whole catalog was read");
+                    return null;
+                }
+            };
+
+    private static final Function0<Iterable<RowHash>> NO_LOCAL_ROWS =
+            new Function0<Iterable<RowHash>>() {
+                @Override
+                public Iterable<RowHash> invoke() {
+                    fail("the local rows were read");
+                    return null;
+                }
+            };
+
+    @Test
+    public void appliesTheChangesSinceTheWatermark_withoutReadingTheLocalRows() {
+        String watermark = delta.find("w1",
+                changes("{\"watermark\": \"w2\", \"changed\": [\"1:b\", \"3:a\"]}"),
+                NO_CATALOG, NO_LOCAL_ROWS, out);
+
+        assertEquals("w2", watermark);
+        assertEquals(Arrays.asList("1:b", "3:a"), out.inserts);
+        assertEquals(Collections.emptyList(), out.deletes);
+    }
+
+    @Test
+    public void deletesTheTombstones_ofADelta() {
+        String watermark = delta.find("w1",
+                changes("{\"watermark\": \"w2\", \"changed\": null, \"deleted\": [\"2\"]}"),
+                NO_CATALOG, NO_LOCAL_ROWS, out);
+
+        assertEquals("w2", watermark);
+        assertEquals(Collections.singletonList("2"), out.deletes);
+        assertEquals(Collections.emptyList(), out.inserts);
+    }
+
+    @Test
+    public void diffsTheCatalog_againstTheLocalHashes_withoutAWatermark() {
+        String watermark = delta.find(null,
+                changes("{\"changed\": [\"1:a\", \"2:b\", \"4:a\"], \"deleted\": [\"5\"], " +
+                        "\"watermark\": \"w1\"}"),
+                NO_CATALOG, local("1:a", "2:a", "3:a", "5:a"), out);
+
+        assertEquals("w1", watermark);
+        assertEquals(Collections.singletonList("4:a"), out.inserts);
+        assertEquals(Collections.singletonList("2:b"), out.updates);
+        // 5 was deleted on the server, and 3 is no longer in the catalog
+        assertEquals(Arrays.asList("5", "3"), out.deletes);
+    }
+
+    @Test
+    public void fallsBackToTheWholeCatalog_whenThereAreNoChanges_andKeepsNoWatermark() {
+        String watermark = delta.find("w1", null,
+                catalog("1:a", "2:b", "4:a"), local("1:a", "2:a", "3:a"), out);
+
+        assertNull(watermark);
+        assertEquals(Collections.singletonList("4:a"), out.inserts);
+        assertEquals(Collections.singletonList("2:b"), out.updates);
+        assertEquals(Collections.singletonList("3"), out.deletes);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void fetchesTheCatalog_beforeReadingTheLocalRows() {
+        delta.find("w1", null, new Function0<Map<String, String>>() {
+            @Override
+            public Map<String, String> invoke() {
+                throw new IllegalStateException("offline");
+            }
+        }, NO_LOCAL_ROWS, out);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnChangesWithoutAWatermark() {
+        delta.find("w1", changes("{\"changed\": [\"1:a\"]}"), NO_CATALOG, NO_LOCAL_ROWS, out);
+    }
+}
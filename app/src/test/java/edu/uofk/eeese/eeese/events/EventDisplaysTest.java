@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 Ali Salah Alddin
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.uofk.eeese.eeese.events;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import edu.uofk.eeese.eeese.data.Event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class EventDisplaysTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final DateTime START =
+            new DateTime(2017, 3, 1, 22, 30, DateTimeZone.forOffsetHours(3));
+
+    private static Event event(DateTime start, DateTime end) {
+        return new Event("id", "Event", "Description", null, null, null, start, end);
+    }
+
+    private static String format(DateFormat format, DateTime dateTime, TimeZone zone) {
+        format.setTimeZone(zone);
+        return format.format(dateTime.toDate());
+    }
+
+    @Test
+    public void formatsTheDatesInTheGivenZone_notTheEventOffset() {
+        List<EventDisplay> displays = EventDisplays.of(
+                Collections.singletonList(event(START, START.plusHours(2))), Locale.US, UTC);
+        EventDisplay display = displays.get(0);
+        assertEquals(format(DateFormat.getDateInstance(DateFormat.DEFAULT, Locale.US), START, UTC),
+                display.getStartDate());
+        assertEquals(format(DateFormat.getTimeInstance(DateFormat.DEFAULT, Locale.US), START, UTC),
+                display.getStartTime());
+        assertEquals(format(DateFormat.getTimeInstance(DateFormat.DEFAULT, Locale.US),
+                START.plusHours(2), UTC), display.getEndTime());
+    }
+
+    @Test
+    public void leavesTheMissingDatesOut() {
+        EventDisplay display = EventDisplays.of(
+                Collections.singletonList(event(START, null)), Locale.US, UTC).get(0);
+        assertNull(display.getEndDate());
+        assertNull(display.getEndTime());
+    }
+
+    @Test
+    public void formatsEveryZoneWithItsOwnFormats() {
+        List<Event> events = Collections.singletonList(event(START, null));
+        EventDisplay utc = EventDisplays.of(events, Locale.US, UTC).get(0);
+        EventDisplay plusThree = EventDisplays.of(events, Locale.US,
+                TimeZone.getTimeZone("GMT+03:00")).get(0);
+        // 22:30 at +03:00 is 19:30 in UTC
+        assertNotEquals(utc.getStartTime(), plusThree.getStartTime());
+        assertEquals(EventDisplays.of(events, Locale.US, UTC).get(0), utc);
+    }
+}